@@ -7,11 +7,16 @@ package com.nmote.iim4j;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import com.nmote.iim4j.dataset.DataSetInfo;
 import com.nmote.iim4j.dataset.DefaultDataSet;
+import com.nmote.iim4j.stream.ChannelIIMOutputStream;
 import com.nmote.iim4j.stream.IIMInputStream;
 import com.nmote.iim4j.stream.IIMOutputStream;
+import com.nmote.iim4j.stream.PositionalIIMInputStream;
+import com.nmote.iim4j.stream.TransferableIIMInputStream;
 
 /**
  * CachedDataSet is a DataSet implementation that uses cached IIMInputStream for
@@ -34,9 +39,16 @@ class CachedDataSet extends DefaultDataSet {
 			byte[] data = super.getData();
 			if (data == null && input != null) {
 				try {
-					synchronized (input) {
-						input.seek(pos);
-						data = IIMReader.readFully(input, length);
+					if (input instanceof PositionalIIMInputStream) {
+						data = new byte[length];
+						if (IIMReader.readFully((PositionalIIMInputStream) input, pos, data, length) < length) {
+							throw new EOFException("premature end-of-file reached");
+						}
+					} else {
+						synchronized (input) {
+							input.seek(pos);
+							data = IIMReader.readFully(input, length);
+						}
 					}
 					super.setData(data);
 				} catch (IOException e) {
@@ -49,22 +61,94 @@ class CachedDataSet extends DefaultDataSet {
 		}
 	}
 
+	void readDataTo(ByteBuffer dst) throws IOException {
+		synchronized (this) {
+			byte[] data = super.getData();
+			if (data == null && dst.hasArray() && input instanceof PositionalIIMInputStream) {
+				// Read directly into destination array
+				int off = dst.arrayOffset() + dst.position();
+				PositionalIIMInputStream in = (PositionalIIMInputStream) input;
+				int r = 0;
+				while (r < length) {
+					int n = in.read(pos + r, dst.array(), off + r, length - r);
+					if (n < 0)
+						throw new EOFException("premature end-of-file reached");
+					r += n;
+				}
+				dst.position(dst.position() + length);
+			} else if (data == null && dst.hasArray() && input != null) {
+				// Read directly into destination array, without keeping data
+				int off = dst.arrayOffset() + dst.position();
+				synchronized (input) {
+					input.seek(pos);
+					int r = 0;
+					while (r < length) {
+						int n = input.read(dst.array(), off + r, length - r);
+						if (n < 0)
+							throw new EOFException("premature end-of-file reached");
+						r += n;
+					}
+				}
+				dst.position(dst.position() + length);
+			} else if (data != null) {
+				dst.put(data);
+			} else if (input != null) {
+				dst.put(getData());
+			} else {
+				throw new IOException("invalid state");
+			}
+		}
+	}
+
+	/**
+	 * @return true if writeDataTo() would copy data to a given output with
+	 *         channel transfers, bypassing heap
+	 */
+	boolean isTransferableTo(IIMOutputStream out) {
+		synchronized (this) {
+			return super.getData() == null && input instanceof TransferableIIMInputStream
+					&& out instanceof ChannelIIMOutputStream;
+		}
+	}
+
 	void writeDataTo(IIMOutputStream out) throws IOException {
 		synchronized (this) {
 			byte[] data = super.getData();
 			if (data != null) {
 				out.write(data);
+			} else if (input instanceof TransferableIIMInputStream && out instanceof ChannelIIMOutputStream) {
+				// Copy data from input to output channel, bypassing heap
+				TransferableIIMInputStream in = (TransferableIIMInputStream) input;
+				WritableByteChannel channel = ((ChannelIIMOutputStream) out).getChannel();
+				long copied = 0;
+				while (copied < length) {
+					long r = in.transferTo(pos + copied, length - copied, channel);
+					if (r <= 0)
+						throw new EOFException("premature end-of-file reached");
+					copied += r;
+				}
+			} else if (input instanceof PositionalIIMInputStream) {
+				PositionalIIMInputStream in = (PositionalIIMInputStream) input;
+				byte[] buffer = new byte[Math.min(length, 2048)];
+				int copied = 0;
+				while (copied < length) {
+					int r = in.read(pos + copied, buffer, 0, Math.min(buffer.length, length - copied));
+					if (r < 0)
+						throw new EOFException("premature end-of-file reached");
+					out.write(buffer, 0, r);
+					copied += r;
+				}
 			} else if (input != null) {
 				synchronized (input) {
 					input.seek(pos);
 					byte[] buffer = new byte[Math.min(length, 2048)];
 					int copied = 0;
 					while (copied < length) {
-						int r = input.read(buffer);
+						int r = input.read(buffer, 0, Math.min(buffer.length, length - copied));
 						if (r < 0)
 							throw new EOFException("premature end-of-file reached");
+						out.write(buffer, 0, r);
 						copied += r;
-						out.write(buffer);
 					}
 				}
 			} else {
@@ -74,10 +158,13 @@ class CachedDataSet extends DefaultDataSet {
 	}
 
 	/**
-	 * @return Returns the length.
+	 * @return Returns the length, or length of data replaced with setData().
 	 */
 	public int getLength() {
-		return this.length;
+		synchronized (this) {
+			byte[] data = super.getData();
+			return data != null ? data.length : this.length;
+		}
 	}
 
 	private IIMInputStream input;
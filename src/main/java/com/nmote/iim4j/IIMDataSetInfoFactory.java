@@ -9,9 +9,11 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import com.nmote.iim4j.dataset.DataSetInfo;
 import com.nmote.iim4j.dataset.DataSetInfoFactory;
@@ -23,17 +25,91 @@ import com.nmote.iim4j.serialize.DefaultSerializerFactory;
 import com.nmote.iim4j.serialize.SerializerFactory;
 
 /**
- * IIMDataSetInfoFactory
+ * IIMDataSetInfoFactory creates DataSetInfo instances from IIM meta file. Data
+ * set infos are kept in a flat table indexed by data set number. Version 4
+ * table is generated from IIMv4.txt into IIMv4DataSets (see
+ * {@link #main(String[])}), so no meta file is parsed at startup unless passed
+ * explicitly. Instances are immutable, use {@link #forVersion(String)} to get
+ * a shared one.
  */
 public class IIMDataSetInfoFactory extends DefaultDataSetInfoFactory {
 
 	public static final DataSetInfoFactory VERSION_4 = new IIMDataSetInfoFactory();
 
+	/**
+	 * Returns a shared factory for a given IIM version, using default
+	 * serializers.
+	 *
+	 * @param version
+	 *            IIM version, for example "4"
+	 * @return shared factory instance
+	 */
+	public static IIMDataSetInfoFactory forVersion(String version) {
+		if (version == null) {
+			throw new NullPointerException("version == null");
+		}
+		if ("4".equals(version)) {
+			return (IIMDataSetInfoFactory) VERSION_4;
+		}
+		synchronized (defaults) {
+			IIMDataSetInfoFactory result = defaults.get(version);
+			if (result == null) {
+				result = new IIMDataSetInfoFactory(version, new DefaultSerializerFactory());
+				defaults.put(version, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns a shared factory for a given IIM version and serializer factory.
+	 * Factories are cached by version and serializer factory. Factories for
+	 * custom serializer factories are released when their serializer factory
+	 * is no longer used.
+	 *
+	 * @param version
+	 *            IIM version, for example "4"
+	 * @param serializerFactory
+	 *            factory to create serializers with
+	 * @return shared factory instance
+	 * @throws NullPointerException
+	 *             if version or serializerFactory is null
+	 */
+	public static IIMDataSetInfoFactory forVersion(String version, SerializerFactory serializerFactory) {
+		if (serializerFactory == null) {
+			throw new NullPointerException("serializerFactory == null");
+		}
+		if (serializerFactory.getClass() == DefaultSerializerFactory.class) {
+			return forVersion(version);
+		}
+		if (version == null) {
+			throw new NullPointerException("version == null");
+		}
+		synchronized (factories) {
+			Map<String, IIMDataSetInfoFactory> versions = factories.get(serializerFactory);
+			if (versions == null) {
+				versions = new HashMap<String, IIMDataSetInfoFactory>();
+				factories.put(serializerFactory, versions);
+			}
+			IIMDataSetInfoFactory result = versions.get(version);
+			if (result == null) {
+				result = new IIMDataSetInfoFactory(version, serializerFactory);
+				versions.put(version, result);
+			}
+			return result;
+		}
+	}
+
 	public IIMDataSetInfoFactory() {
 		this("4", new DefaultSerializerFactory());
 	}
 
 	public IIMDataSetInfoFactory(String version, SerializerFactory serializerFactory) {
+		if ("4".equals(version)) {
+			dataSets = IIMv4DataSets.create(serializerFactory);
+			return;
+		}
+
 		String file = "IIMv" + version + ".txt";
 		try {
 			InputStream in = IIMDataSetInfoFactory.class.getResourceAsStream(file);
@@ -46,8 +122,22 @@ public class IIMDataSetInfoFactory extends DefaultDataSetInfoFactory {
 		}
 	}
 
-	private Map<Integer, DataSetInfo> load(InputStream in, SerializerFactory serializerFactory) throws IOException {
-		Map<Integer, DataSetInfo> ds = new HashMap<Integer, DataSetInfo>();
+	/**
+	 * Creates data set infos from a meta file, overriding a precompiled table.
+	 *
+	 * @param metaFile
+	 *            meta file in IIMv4.txt format, closed after reading
+	 * @param serializerFactory
+	 *            factory to create serializers with
+	 * @throws IOException
+	 *             if meta file can't be read
+	 */
+	public IIMDataSetInfoFactory(InputStream metaFile, SerializerFactory serializerFactory) throws IOException {
+		dataSets = load(metaFile, serializerFactory);
+	}
+
+	private static DataSetInfo[] load(InputStream in, SerializerFactory serializerFactory) throws IOException {
+		DataSetInfo[] ds = new DataSetInfo[SIZE];
 		BufferedReader r = new BufferedReader(new InputStreamReader(in, "utf-8"));
 		for (;;) {
 			String line = r.readLine();
@@ -61,19 +151,16 @@ public class IIMDataSetInfoFactory extends DefaultDataSetInfoFactory {
 			String[] a = line.split(":");
 			DataSetInfo info = new DefaultDataSetInfo(Integer.parseInt(a[0]) << 8 | Integer.parseInt(a[1]),
 					a[2].trim(), serializerFactory.create(a[3]), a[4].indexOf('r') != -1, a[4].indexOf('m') != -1);
-			ds.put(createKey(info.getDataSetNumber()), info);
+			ds[info.getDataSetNumber()] = info;
 		}
 		r.close();
 		return ds;
 	}
 
-	private Integer createKey(int dataSet) {
-		return new Integer(dataSet);
-	}
-
 	/**
 	 * Creates and caches dataset info object. Subsequent invocations will
-	 * return same instance.
+	 * return same instance. For unknown data sets a cached exception without
+	 * stack trace is thrown, use {@link #find(int)} to avoid it.
 	 *
 	 * @see IIM#DS(int, int)
 	 * @param dataSet
@@ -81,24 +168,88 @@ public class IIMDataSetInfoFactory extends DefaultDataSetInfoFactory {
 	 * @return dataset info instace
 	 */
 	public DataSetInfo create(int dataSet) throws InvalidDataSetException {
-		DataSetInfo info = dataSets.get(createKey(dataSet));
+		DataSetInfo info = find(dataSet);
 		if (info == null) {
+			throw unsupported(dataSet);
+		}
+		return info;
+	}
+
+	/**
+	 * Returns dataset info object without throwing an exception for unknown
+	 * data sets.
+	 *
+	 * @see IIM#DS(int, int)
+	 * @param dataSet
+	 *            dataset record number
+	 * @return dataset info instance or null if data set is unknown
+	 */
+	public DataSetInfo find(int dataSet) {
+		return dataSet >= 0 && dataSet < SIZE ? dataSets[dataSet] : null;
+	}
+
+	private static UnsupportedDataSetException unsupported(int dataSet) {
+		UnsupportedDataSetException e = dataSet >= 0 && dataSet < SIZE ? UNSUPPORTED[dataSet] : null;
+		if (e == null) {
 			int recordNumber = (dataSet >> 8) & 0xFF;
 			int dataSetNumber = dataSet & 0xFF;
-			throw new UnsupportedDataSetException(recordNumber + ":" + dataSetNumber);
-			// info = super.create(dataSet);
+			e = new CachedUnsupportedDataSetException(recordNumber + ":" + dataSetNumber);
+			if (dataSet >= 0 && dataSet < SIZE) {
+				UNSUPPORTED[dataSet] = e;
+			}
 		}
-		return info;
+		return e;
 	}
 
-	private final Map<Integer, DataSetInfo> dataSets;
+	/**
+	 * Immutable exception shared between threads, without stack trace, cause
+	 * or suppressed exceptions.
+	 */
+	private static class CachedUnsupportedDataSetException extends UnsupportedDataSetException {
+
+		private static final long serialVersionUID = About.SERIAL_VERSION_UID;
+
+		CachedUnsupportedDataSetException(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	/** Number of table slots, 256 data sets in records 0-9 */
+	private static final int SIZE = 10 << 8;
+
+	/** Negative entries, exceptions thrown for unknown data sets */
+	private static final UnsupportedDataSetException[] UNSUPPORTED = new UnsupportedDataSetException[SIZE];
+
+	/** Factories with default serializers by version, kept for good */
+	private static final Map<String, IIMDataSetInfoFactory> defaults = new HashMap<String, IIMDataSetInfoFactory>();
+
+	/** Factories with custom serializers, released with serializer factory */
+	private static final Map<SerializerFactory, Map<String, IIMDataSetInfoFactory>> factories = new WeakHashMap<SerializerFactory, Map<String, IIMDataSetInfoFactory>>();
 
+	private final DataSetInfo[] dataSets;
+
+	/**
+	 * Prints IIM constants, or with "table" argument IIMv4DataSets source
+	 * generated from IIMv4.txt. Run it after editing IIMv4.txt:
+	 *
+	 * <pre>
+	 * java com.nmote.iim4j.IIMDataSetInfoFactory table &gt; src/main/java/com/nmote/iim4j/IIMv4DataSets.java
+	 * </pre>
+	 */
 	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && "table".equals(args[0])) {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "utf-8"));
+			writeTable(IIMDataSetInfoFactory.class.getResourceAsStream("IIMv4.txt"), out);
+			out.flush();
+			return;
+		}
+
 		IIMDataSetInfoFactory dsf = new IIMDataSetInfoFactory();
-		for (Iterator<Map.Entry<Integer, DataSetInfo>> i = dsf.dataSets.entrySet().iterator(); i.hasNext();) {
-			Map.Entry<Integer, DataSetInfo> entry = i.next();
-			DataSetInfo ds = entry.getValue();
-			int dataSet = entry.getKey().intValue();
+		for (int dataSet = 0; dataSet < SIZE; ++dataSet) {
+			DataSetInfo ds = dsf.dataSets[dataSet];
+			if (ds == null) {
+				continue;
+			}
 			int recordNumber = (dataSet >> 8) & 0xFF;
 			int dataSetNumber = dataSet & 0xFF;
 
@@ -108,6 +259,85 @@ public class IIMDataSetInfoFactory extends DefaultDataSetInfoFactory {
 					+ recordNumber + ", " + dataSetNumber + ");");
 			System.out.println();
 		}
+	}
 
+	/**
+	 * Writes IIMv4DataSets source with a table generated from a meta file.
+	 *
+	 * @param metaFile
+	 *            meta file in IIMv4.txt format, closed after reading
+	 * @param out
+	 *            receives Java source
+	 * @throws IOException
+	 *             if meta file can't be read
+	 */
+	static void writeTable(InputStream metaFile, PrintWriter out) throws IOException {
+		out.print(TABLE_HEADER);
+		BufferedReader r = new BufferedReader(new InputStreamReader(metaFile, "utf-8"));
+		for (;;) {
+			String line = r.readLine();
+			if (line == null) {
+				break;
+			}
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			String[] a = line.split(":");
+			out.print("\t\tadd(ds, sf, " + Integer.parseInt(a[0]) + ", " + Integer.parseInt(a[1]) + ", "
+					+ javaString(a[2].trim()) + ", " + javaString(a[3]) + ", " + (a[4].indexOf('r') != -1) + ", "
+					+ (a[4].indexOf('m') != -1) + ");\n");
+		}
+		r.close();
+		out.print(TABLE_FOOTER);
+	}
+
+	private static String javaString(String s) {
+		StringBuilder result = new StringBuilder(s.length() + 2);
+		result.append('"');
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\');
+			}
+			result.append(c);
+		}
+		result.append('"');
+		return result.toString();
 	}
+
+	private static final String TABLE_HEADER = "/*\n"
+			+ " * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.\n"
+			+ " * See LICENSE doc in a root of project folder for additional information.\n"
+			+ " */\n"
+			+ "\n"
+			+ "package com.nmote.iim4j;\n"
+			+ "\n"
+			+ "import com.nmote.iim4j.dataset.DataSetInfo;\n"
+			+ "import com.nmote.iim4j.dataset.DefaultDataSetInfo;\n"
+			+ "import com.nmote.iim4j.serialize.SerializerFactory;\n"
+			+ "\n"
+			+ "/**\n"
+			+ " * Precompiled IIM version 4 data set infos. Generated from IIMv4.txt by\n"
+			+ " * IIMDataSetInfoFactory.main(\"table\"), don't edit. The build doesn't\n"
+			+ " * regenerate it, IIMv4DataSetsTest is the only check that it agrees with\n"
+			+ " * IIMv4.txt.\n"
+			+ " */\n"
+			+ "final class IIMv4DataSets {\n"
+			+ "\n"
+			+ "\tprivate IIMv4DataSets() {\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tstatic DataSetInfo[] create(SerializerFactory sf) {\n"
+			+ "\t\tDataSetInfo[] ds = new DataSetInfo[10 << 8];\n";
+
+	private static final String TABLE_FOOTER = "\t\treturn ds;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tprivate static void add(DataSetInfo[] ds, SerializerFactory sf, int record, int dataSet, String name,\n"
+			+ "\t\t\tString serializer, boolean repeatable, boolean mandatory) {\n"
+			+ "\t\tint dsn = record << 8 | dataSet;\n"
+			+ "\t\tds[dsn] = new DefaultDataSetInfo(dsn, name, sf.create(serializer), repeatable, mandatory);\n"
+			+ "\t}\n"
+			+ "}\n";
 }
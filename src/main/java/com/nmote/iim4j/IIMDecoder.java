@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.dataset.DataSetInfoFactory;
+import com.nmote.iim4j.dataset.DefaultDataSet;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.stream.TagScanner;
+
+/**
+ * IIMDecoder is a non-blocking, push mode counterpart of IIMReader. Input is
+ * fed in chunks of any size as it arrives, for example from NIO channels, and
+ * decoder returns data sets completed by each chunk. Tags, data set headers,
+ * extended lengths and values may be split across chunks; only a value of a
+ * data set being decoded is buffered. Value buffer grows as bytes arrive, so a
+ * length in a damaged header doesn't allocate memory up front. After a
+ * malformed header decoder searches for a next plausible data set header (see
+ * {@link TagScanner}), so a run of corrupt bytes is reported once.
+ */
+public class IIMDecoder {
+
+	public IIMDecoder() {
+		this(IIMDataSetInfoFactory.VERSION_4);
+	}
+
+	public IIMDecoder(DataSetInfoFactory dsiFactory) {
+		if (dsiFactory == null) {
+			throw new NullPointerException("dsiFactory == null");
+		}
+		this.dsiFactory = dsiFactory;
+	}
+
+	/**
+	 * Decodes a chunk of input.
+	 *
+	 * @param chunk
+	 *            input bytes, all remaining bytes are consumed
+	 * @return data sets completed by chunk, possibly empty
+	 * @throws IIMFormatException
+	 *             if chunk contains malformed data set header
+	 * @throws InvalidDataSetException
+	 *             if data set is unsupported
+	 * @see #feed(ByteBuffer, Collection)
+	 */
+	public List<DataSet> feed(ByteBuffer chunk) throws IIMFormatException, InvalidDataSetException {
+		List<DataSet> result = new ArrayList<DataSet>();
+		feed(chunk, result);
+		return result;
+	}
+
+	/**
+	 * Decodes a chunk of input, adding completed data sets to a collection.
+	 * On error chunk is positioned after offending byte and data sets
+	 * completed before it are already added, so feeding can continue.
+	 * Decoder then skips a value of unsupported data set, or after malformed
+	 * header skips bytes up to a next plausible header of a supported data
+	 * set without reporting them. Data sets longer than
+	 * {@link #getMaxDataSetLength()} are malformed.
+	 *
+	 * @param chunk
+	 *            input bytes, consumed until all are decoded or an error
+	 * @param out
+	 *            collection receiving completed data sets
+	 * @return number of data sets added to out
+	 * @throws IIMFormatException
+	 *             if chunk contains malformed data set header
+	 * @throws InvalidDataSetException
+	 *             if data set is unsupported
+	 */
+	public int feed(ByteBuffer chunk, Collection<? super DataSet> out) throws IIMFormatException,
+			InvalidDataSetException {
+		int count = 0;
+		while (chunk.hasRemaining()) {
+			switch (state) {
+			case TAG:
+				if (chunk.get() != 28) {
+					resync(new IIMFormatException("expected TAG 0x1C"));
+				} else {
+					state = RECORD;
+				}
+				break;
+			case RECORD:
+				dataSet = (chunk.get() & 0xFF) << 8;
+				state = DATA_SET;
+				break;
+			case DATA_SET:
+				dataSet |= chunk.get() & 0xFF;
+				state = LENGTH_HIGH;
+				break;
+			case LENGTH_HIGH:
+				length = (chunk.get() & 0xFF) << 8;
+				state = LENGTH_LOW;
+				break;
+			case LENGTH_LOW:
+				length |= chunk.get() & 0xFF;
+				count += endHeader(out);
+				break;
+			case EXTENDED_LENGTH:
+				length = (length << 8) | chunk.get() & 0xFF;
+				if (--extendedCount == 0) {
+					if (length < 0) {
+						resync(new IIMFormatException("data set length too long"));
+					} else {
+						count += startValue(out);
+					}
+				}
+				break;
+			case VALUE: {
+				int n = Math.min(chunk.remaining(), length - valueLength);
+				if (valueLength + n > value.length) {
+					value = Arrays.copyOf(value, (int) Math.min(length, Math.max(valueLength + n, 2L * value.length)));
+				}
+				chunk.get(value, valueLength, n);
+				valueLength += n;
+				if (valueLength == length) {
+					out.add(new DefaultDataSet(info, value));
+					++count;
+					endValue();
+				}
+				break;
+			}
+			case SKIP: {
+				int n = Math.min(chunk.remaining(), length - valueLength);
+				chunk.position(chunk.position() + n);
+				valueLength += n;
+				if (valueLength == length) {
+					endValue();
+				}
+				break;
+			}
+			case RESYNC: {
+				byte b = chunk.get();
+				if (candidateLength > 0 || b == 28) {
+					candidate[candidateLength++] = b;
+					if (candidateLength == candidate.length) {
+						count += resyncCandidate(out);
+					}
+				}
+				break;
+			}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks a complete candidate header found while resyncing. Plausible
+	 * header of a supported data set is decoded, otherwise search continues
+	 * from a next 0x1C in candidate bytes.
+	 *
+	 * @return 1 if an empty data set was completed, 0 otherwise
+	 */
+	private int resyncCandidate(Collection<? super DataSet> out) throws IIMFormatException,
+			InvalidDataSetException {
+		int ds = (candidate[1] & 0xFF) << 8 | candidate[2] & 0xFF;
+		if (TagScanner.isPlausible(candidate, 1) && isSupported(ds)) {
+			candidateLength = 0;
+			dataSet = ds;
+			length = (candidate[3] & 0xFF) << 8 | candidate[4] & 0xFF;
+			return endHeader(out);
+		}
+
+		int next = 1;
+		while (next < candidate.length && candidate[next] != 28) {
+			++next;
+		}
+		candidateLength = candidate.length - next;
+		System.arraycopy(candidate, next, candidate, 0, candidateLength);
+		return 0;
+	}
+
+	/**
+	 * Continues after two length bytes of a header were decoded.
+	 *
+	 * @return 1 if an empty data set was completed, 0 otherwise
+	 */
+	private int endHeader(Collection<? super DataSet> out) throws IIMFormatException, InvalidDataSetException {
+		if (length > 32767) {
+			// Extended Tag
+			extendedCount = length & 0x7FFF;
+			length = 0;
+			try {
+				IIMReader.checkExtendedCount(extendedCount);
+			} catch (IIMFormatException e) {
+				resync(e);
+				return 0;
+			}
+			state = EXTENDED_LENGTH;
+			return 0;
+		}
+		return startValue(out);
+	}
+
+	/**
+	 * Starts searching for a next plausible header after malformed one.
+	 * Error is thrown unless decoder is recovering from errors.
+	 */
+	private void resync(IIMFormatException e) throws IIMFormatException {
+		endValue();
+		state = RESYNC;
+		candidateLength = 0;
+		++resyncCount;
+		if (!recover) {
+			throw e;
+		}
+	}
+
+	private boolean isSupported(int dataSet) {
+		try {
+			return IIMReader.find(dsiFactory, dataSet) != null;
+		} catch (InvalidDataSetException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks that input ended between data sets, or while skipping corrupt
+	 * bytes.
+	 *
+	 * @throws EOFException
+	 *             if last data set is incomplete
+	 */
+	public void finish() throws EOFException {
+		if (state != TAG && state != RESYNC) {
+			throw new EOFException("incomplete data set " + (dataSet >> 8) + ":" + (dataSet & 0xFF));
+		}
+	}
+
+	/**
+	 * Discards partially decoded data set, decoder then expects a next tag.
+	 */
+	public void reset() {
+		endValue();
+		candidateLength = 0;
+	}
+
+	/**
+	 * Returns true if malformed headers are skipped without throwing
+	 * IIMFormatException.
+	 *
+	 * @return true if decoder recovers from errors
+	 */
+	public boolean isRecover() {
+		return recover;
+	}
+
+	/**
+	 * Controls if malformed headers are reported. Either way decoder skips
+	 * bytes up to a next plausible header, see {@link #getResyncCount()}.
+	 *
+	 * @param recover
+	 *            true to skip malformed headers without throwing
+	 *            IIMFormatException
+	 */
+	public void setRecover(boolean recover) {
+		this.recover = recover;
+	}
+
+	/**
+	 * Returns number of times decoder started searching for a next header
+	 * after malformed one.
+	 *
+	 * @return number of corrupt runs
+	 */
+	public int getResyncCount() {
+		return resyncCount;
+	}
+
+	/**
+	 * Returns maximum length of data set value.
+	 *
+	 * @return maximum length in bytes
+	 */
+	public int getMaxDataSetLength() {
+		return maxDataSetLength;
+	}
+
+	/**
+	 * Sets maximum length of data set value. Headers with longer values are
+	 * rejected before any bytes are buffered. There is no limit by default.
+	 *
+	 * @param maxDataSetLength
+	 *            maximum length in bytes
+	 */
+	public void setMaxDataSetLength(int maxDataSetLength) {
+		if (maxDataSetLength < 0) {
+			throw new IllegalArgumentException("maxDataSetLength: " + maxDataSetLength);
+		}
+		this.maxDataSetLength = maxDataSetLength;
+	}
+
+	/**
+	 * Returns how unsupported data sets are handled.
+	 *
+	 * @return one of IIMReader.UNSUPPORTED_THROW, IIMReader.UNSUPPORTED_SKIP or
+	 *         IIMReader.UNSUPPORTED_BINARY
+	 */
+	public int getUnsupportedDataSets() {
+		return unsupportedDataSets;
+	}
+
+	/**
+	 * Controls how data sets unknown to data set info factory are handled.
+	 * Values of skipped data sets aren't buffered.
+	 *
+	 * @param unsupportedDataSets
+	 *            one of IIMReader.UNSUPPORTED_THROW, IIMReader.UNSUPPORTED_SKIP
+	 *            or IIMReader.UNSUPPORTED_BINARY
+	 * @see IIMReader#setUnsupportedDataSets(int)
+	 */
+	public void setUnsupportedDataSets(int unsupportedDataSets) {
+		if (unsupportedDataSets < IIMReader.UNSUPPORTED_THROW || unsupportedDataSets > IIMReader.UNSUPPORTED_BINARY) {
+			throw new IllegalArgumentException("unsupportedDataSets: " + unsupportedDataSets);
+		}
+		this.unsupportedDataSets = unsupportedDataSets;
+	}
+
+	/**
+	 * Returns number of unsupported data sets that were skipped or returned as
+	 * binary data sets.
+	 *
+	 * @return unsupported data set count
+	 */
+	public int getUnsupportedCount() {
+		return unsupportedCount;
+	}
+
+	/**
+	 * Starts a value after data set header was decoded.
+	 *
+	 * @return 1 if an empty data set was completed, 0 otherwise
+	 */
+	private int startValue(Collection<? super DataSet> out) throws IIMFormatException, InvalidDataSetException {
+		if (length > maxDataSetLength) {
+			resync(new IIMFormatException("data set " + (dataSet >> 8) + ":" + (dataSet & 0xFF) + " length "
+					+ length + " exceeds " + maxDataSetLength));
+			return 0;
+		}
+		valueLength = 0;
+		try {
+			info = createInfo(dataSet);
+		} catch (InvalidDataSetException e) {
+			// Skip a value of a data set that can't be decoded
+			info = null;
+			state = length == 0 ? TAG : SKIP;
+			throw e;
+		}
+
+		if (info == null) {
+			state = length == 0 ? TAG : SKIP;
+			return 0;
+		}
+		value = new byte[Math.min(length, INITIAL_VALUE_SIZE)];
+		if (length == 0) {
+			out.add(new DefaultDataSet(info, value));
+			endValue();
+			return 1;
+		}
+		state = VALUE;
+		return 0;
+	}
+
+	private void endValue() {
+		state = TAG;
+		info = null;
+		value = null;
+		valueLength = 0;
+	}
+
+	private DataSetInfo createInfo(int dataSet) throws InvalidDataSetException {
+		if (unsupportedDataSets == IIMReader.UNSUPPORTED_THROW) {
+			return dsiFactory.create(dataSet);
+		}
+
+		DataSetInfo info = IIMReader.find(dsiFactory, dataSet);
+		if (info == null) {
+			++unsupportedCount;
+			if (unsupportedDataSets == IIMReader.UNSUPPORTED_BINARY) {
+				info = IIMReader.BINARY_FACTORY.create(dataSet);
+			}
+		}
+		return info;
+	}
+
+	private static final int INITIAL_VALUE_SIZE = 8192;
+
+	private static final int TAG = 0;
+	private static final int RECORD = 1;
+	private static final int DATA_SET = 2;
+	private static final int LENGTH_HIGH = 3;
+	private static final int LENGTH_LOW = 4;
+	private static final int EXTENDED_LENGTH = 5;
+	private static final int VALUE = 6;
+	private static final int SKIP = 7;
+	private static final int RESYNC = 8;
+
+	/** Tag and header bytes of a candidate found while resyncing */
+	private final byte[] candidate = new byte[5];
+	private int candidateLength;
+	private int dataSet;
+	private DataSetInfo info;
+	private int extendedCount;
+	private int length;
+	private int maxDataSetLength = Integer.MAX_VALUE;
+	private boolean recover;
+	private int resyncCount;
+	private int state = TAG;
+	private int unsupportedCount;
+	private int unsupportedDataSets = IIMReader.UNSUPPORTED_THROW;
+	private byte[] value;
+	private int valueLength;
+	private final DataSetInfoFactory dsiFactory;
+}
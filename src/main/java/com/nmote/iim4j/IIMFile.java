@@ -7,22 +7,31 @@ package com.nmote.iim4j;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.nmote.iim4j.dataset.ByteBufferDataSet;
 import com.nmote.iim4j.dataset.ConstraintViolation;
 import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DataSetFilter;
 import com.nmote.iim4j.dataset.DataSetInfo;
 import com.nmote.iim4j.dataset.DataSetInfoFactory;
 import com.nmote.iim4j.dataset.DefaultDataSet;
 import com.nmote.iim4j.dataset.InvalidDataSetException;
 import com.nmote.iim4j.dataset.UnsupportedDataSetException;
+import com.nmote.iim4j.serialize.DateSerializer;
 import com.nmote.iim4j.serialize.DefaultSerializationContext;
 import com.nmote.iim4j.serialize.SerializationContext;
 import com.nmote.iim4j.serialize.SerializationException;
@@ -61,7 +70,7 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *            to add
 	 */
 	public void add(DataSet dataSet) {
-		dataSets.add(dataSet);
+		addIndexed(dataSet);
 	}
 
 	/**
@@ -84,7 +93,7 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 		DataSetInfo dsi = dsiFactory.create(ds);
 		byte[] data = dsi.getSerializer().serialize(value, activeSerializationContext);
 		DataSet dataSet = new DefaultDataSet(dsi, data);
-		dataSets.add(dataSet);
+		addIndexed(dataSet);
 	}
 
 	/**
@@ -104,11 +113,29 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 			return;
 		}
 
-		DataSetInfo dsi = dsiFactory.create(ds);
+		addDateTimeHelper(ds, OffsetDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+	}
 
-		SimpleDateFormat df = new SimpleDateFormat(dsi.getSerializer().toString());
-		String value = df.format(date);
-		byte[] data = dsi.getSerializer().serialize(value, activeSerializationContext);
+	/**
+	 * Adds a data set with date or time part of a value to IIM file.
+	 *
+	 * @param ds
+	 *            data set id (see constants in IIM class)
+	 * @param dateTime
+	 *            date-time to set. Null values are silently ignored.
+	 * @throws SerializationException
+	 *             if data set isn't a date or time data set
+	 * @throws InvalidDataSetException
+	 *             if data set isn't defined
+	 */
+	public void addDateTimeHelper(int ds, OffsetDateTime dateTime) throws SerializationException,
+			InvalidDataSetException {
+		if (dateTime == null) {
+			return;
+		}
+
+		DataSetInfo dsi = dsiFactory.create(ds);
+		byte[] data = dateSerializer(dsi).format(dateTime);
 		DataSet dataSet = new DefaultDataSet(dsi, data);
 		add(dataSet);
 	}
@@ -122,6 +149,15 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 		addDateTimeHelper(dsTime, date);
 	}
 
+	public void addDateTimeHelper(int dsDate, int dsTime, OffsetDateTime dateTime) throws SerializationException,
+			InvalidDataSetException {
+		if (dateTime == null)
+			return;
+
+		addDateTimeHelper(dsDate, dateTime);
+		addDateTimeHelper(dsTime, dateTime);
+	}
+
 	/**
 	 * Makes a copy of this instance.
 	 *
@@ -136,6 +172,110 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 		return file;
 	}
 
+	/**
+	 * Returns exact number of bytes needed to encode all data sets of this IIM
+	 * file, including extended length headers.
+	 *
+	 * @return encoded length in bytes
+	 */
+	public int encodedLength() {
+		return encodedLength(ALL_RECORDS);
+	}
+
+	/**
+	 * Returns exact number of bytes needed to encode data sets in a given
+	 * record.
+	 *
+	 * @param record
+	 *            IIM record (1,2,3, ...) to encode
+	 * @return encoded length in bytes
+	 */
+	public int encodedLength(int record) {
+		int result = 0;
+		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+			DataSet ds = i.next();
+			if (record == ALL_RECORDS || (ds.getInfo().getDataSetNumber() >> 8) == record) {
+				int len = ds.getLength();
+				result += IIMWriter.headerLength(len) + len;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Encodes all data sets into a passed buffer, starting at its position.
+	 *
+	 * @param buffer
+	 *            buffer to write to
+	 * @throws BufferOverflowException
+	 *             if there isn't enough space remaining in a buffer
+	 * @throws IOException
+	 *             if data set data can't be read
+	 */
+	public void encodeTo(ByteBuffer buffer) throws IOException {
+		encodeTo(buffer, ALL_RECORDS);
+	}
+
+	/**
+	 * Encodes data sets in a given record into a passed buffer, starting at its
+	 * position.
+	 *
+	 * @param buffer
+	 *            buffer to write to
+	 * @param record
+	 *            IIM record (1,2,3, ...) to encode
+	 * @throws BufferOverflowException
+	 *             if there isn't enough space remaining in a buffer
+	 * @throws IOException
+	 *             if data set data can't be read
+	 */
+	public void encodeTo(ByteBuffer buffer, int record) throws IOException {
+		if (buffer.remaining() < encodedLength(record)) {
+			throw new BufferOverflowException();
+		}
+		byte[] header = new byte[9];
+		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+			DataSet ds = i.next();
+			int dsn = ds.getInfo().getDataSetNumber();
+			if (record == ALL_RECORDS || (dsn >> 8) == record) {
+				buffer.put(header, 0, IIMWriter.encodeHeader(dsn, ds.getLength(), header, 0));
+				if (ds instanceof CachedDataSet) {
+					((CachedDataSet) ds).readDataTo(buffer);
+				} else if (ds instanceof ByteBufferDataSet) {
+					buffer.put(((ByteBufferDataSet) ds).getByteBuffer());
+				} else {
+					buffer.put(ds.getData());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encodes all data sets into a byte array of exact size.
+	 *
+	 * @return encoded IIM data
+	 * @throws IOException
+	 *             if data set data can't be read
+	 */
+	public byte[] toByteArray() throws IOException {
+		return toByteArray(ALL_RECORDS);
+	}
+
+	/**
+	 * Encodes data sets in a given record into a byte array of exact size.
+	 *
+	 * @param record
+	 *            IIM record (1,2,3, ...) to encode
+	 * @return encoded IIM data
+	 * @throws IOException
+	 *             if data set data can't be read
+	 */
+	public byte[] toByteArray(int record) throws IOException {
+		byte[] result = new byte[encodedLength(record)];
+		encodeTo(ByteBuffer.wrap(result), record);
+		return result;
+	}
+
 	/**
 	 * Gets a first data set value.
 	 *
@@ -146,16 +286,56 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *             if value can't be deserialized from binary representation
 	 */
 	public Object get(int dataSet) throws SerializationException {
-		Object result = null;
-		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
-			DataSet ds = i.next();
-			DataSetInfo info = ds.getInfo();
-			if (info.getDataSetNumber() == dataSet) {
-				result = getData(ds);
-				break;
-			}
+		DataSet ds = first(dataSet);
+		return ds != null ? getData(ds) : null;
+	}
+
+	/**
+	 * Gets a first numeric data set value as int, without boxing.
+	 *
+	 * @param dataSet
+	 *            IIM record and dataset code (See constants in {@link IIM})
+	 * @return data set value, or 0 if there is no such data set
+	 * @throws SerializationException
+	 *             if value can't be deserialized or isn't a number
+	 */
+	public int getInt(int dataSet) throws SerializationException {
+		DataSet ds = first(dataSet);
+		return ds != null ? ds.getInt() : 0;
+	}
+
+	/**
+	 * Gets a first numeric data set value as long, without boxing.
+	 *
+	 * @param dataSet
+	 *            IIM record and dataset code (See constants in {@link IIM})
+	 * @return data set value, or 0 if there is no such data set
+	 * @throws SerializationException
+	 *             if value can't be deserialized or isn't a number
+	 */
+	public long getLong(int dataSet) throws SerializationException {
+		DataSet ds = first(dataSet);
+		return ds != null ? ds.getLong() : 0;
+	}
+
+	/**
+	 * Gets all numeric data set values as ints, without boxing.
+	 *
+	 * @param dataSet
+	 *            IIM record and dataset code (See constants in {@link IIM})
+	 * @param out
+	 *            array to store values to, values that don't fit are skipped
+	 * @return number of data sets found, which can be larger than out.length
+	 * @throws SerializationException
+	 *             if value can't be deserialized or isn't a number
+	 */
+	public int getIntAll(int dataSet, int[] out) throws SerializationException {
+		List<DataSet> found = find(dataSet);
+		int n = Math.min(found.size(), out.length);
+		for (int i = 0; i < n; ++i) {
+			out[i] = found.get(i).getInt();
 		}
-		return result;
+		return found.size();
 	}
 
 	/**
@@ -168,28 +348,30 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *             if value can't be deserialized from binary representation
 	 */
 	public List<Object> getAll(int dataSet) throws SerializationException {
-		List<Object> result = new ArrayList<Object>();
-		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
-			DataSet ds = i.next();
-			DataSetInfo info = ds.getInfo();
-			if (info.getDataSetNumber() == dataSet) {
-				result.add(getData(ds));
-			}
+		List<DataSet> found = find(dataSet);
+		List<Object> result = new ArrayList<Object>(found.size());
+		for (Iterator<DataSet> i = found.iterator(); i.hasNext();) {
+			result.add(getData(i.next()));
 		}
 		return result;
 	}
 
 	/**
-	 * Gets all data sets in IIM file.
+	 * Gets all data sets in IIM file. Changes made through returned list are
+	 * reflected in this IIM file.
 	 *
 	 * @return Returns the dataSets
 	 */
 	public List<DataSet> getDataSets() {
-		return this.dataSets;
+		if (dataSetsView == null) {
+			dataSetsView = new DataSetList();
+		}
+		return dataSetsView;
 	}
 
 	/**
-	 * Gets combined date/time value from two data sets.
+	 * Gets combined date/time value from two data sets. Times without an
+	 * offset are in a default time zone.
 	 *
 	 * @param dateDataSet
 	 *            data set containing date value
@@ -201,35 +383,58 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *             can't be parsed
 	 */
 	public Date getDateTimeHelper(int dateDataSet, int timeDataSet) throws SerializationException {
-		DataSet dateDS = null;
-		DataSet timeDS = null;
-		for (Iterator<DataSet> i = dataSets.iterator(); (dateDS == null || timeDS == null) && i.hasNext();) {
-			DataSet ds = i.next();
-			DataSetInfo info = ds.getInfo();
-			if (info.getDataSetNumber() == dateDataSet) {
-				dateDS = ds;
-			} else if (info.getDataSetNumber() == timeDataSet) {
-				timeDS = ds;
-			}
-		}
+		OffsetDateTime result = getOffsetDateTimeHelper(dateDataSet, timeDataSet);
+		return result != null ? Date.from(result.toInstant()) : null;
+	}
 
-		Date result = null;
-		if (dateDS != null && timeDS != null) {
-			DataSetInfo dateDSI = dateDS.getInfo();
-			DataSetInfo timeDSI = timeDS.getInfo();
-			SimpleDateFormat format = new SimpleDateFormat(dateDSI.getSerializer().toString()
-					+ timeDSI.getSerializer().toString());
-			StringBuffer date = new StringBuffer(20);
-			try {
-				date.append(getData(dateDS));
-				date.append(getData(timeDS));
-				result = format.parse(date.toString());
-			} catch (ParseException e) {
-				throw new SerializationException("Failed to read date (" + e.getMessage() + ") with format " + date);
-			}
+	/**
+	 * Gets combined date/time value from two data sets as an instant. Times
+	 * without an offset are in a default time zone.
+	 *
+	 * @param dateDataSet
+	 *            data set containing date value
+	 * @param timeDataSet
+	 *            data set containing time value
+	 * @return instant or null if any of data sets is missing
+	 * @throws SerializationException
+	 *             if data sets can't be parsed
+	 */
+	public Instant getInstantHelper(int dateDataSet, int timeDataSet) throws SerializationException {
+		OffsetDateTime result = getOffsetDateTimeHelper(dateDataSet, timeDataSet);
+		return result != null ? result.toInstant() : null;
+	}
+
+	/**
+	 * Gets combined date/time value from two data sets, parsed directly from
+	 * data set bytes. Times without an offset are in a default time zone.
+	 *
+	 * @param dateDataSet
+	 *            data set containing date value
+	 * @param timeDataSet
+	 *            data set containing time value
+	 * @return date-time with offset or null if any of data sets is missing
+	 * @throws SerializationException
+	 *             if data sets can't be parsed
+	 */
+	public OffsetDateTime getOffsetDateTimeHelper(int dateDataSet, int timeDataSet) throws SerializationException {
+		DataSet dateDS = first(dateDataSet);
+		DataSet timeDS = first(timeDataSet);
+		if (dateDS == null || timeDS == null) {
+			return null;
 		}
 
-		return result;
+		byte[] d = dateDS.getData();
+		byte[] t = timeDS.getData();
+		LocalDate date = dateSerializer(dateDS.getInfo()).parseDate(d, 0, d.length);
+		return dateSerializer(timeDS.getInfo()).parseTime(date, t, 0, t.length, ZoneId.systemDefault());
+	}
+
+	private static DateSerializer dateSerializer(DataSetInfo info) throws SerializationException {
+		Serializer s = info.getSerializer();
+		if (!(s instanceof DateSerializer)) {
+			throw new SerializationException("not a date/time data set: " + info);
+		}
+		return (DateSerializer) s;
 	}
 
 	/**
@@ -286,10 +491,51 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *             if invalid/undefined data set is encountered
 	 */
 	public void readFrom(IIMReader reader, int recover) throws IOException, InvalidDataSetException {
+		readFrom(reader, recover, (Projection) null);
+	}
+
+	/**
+	 * Reads only given data sets from a passed reader. Values of other data
+	 * sets are skipped without reading them, and reading stops once all
+	 * requested data sets were found if none of them is repeatable. Like other
+	 * reads, reading stops after 9:10 (see {@link #setStopAfter9_10(boolean)}).
+	 *
+	 * @param reader
+	 *            data sets source
+	 * @param recover
+	 *            max number of errors reading process will try to recover from.
+	 *            Set to 0 to fail immediately
+	 * @param dataSets
+	 *            data sets to read (See constants in {@link IIM})
+	 * @throws IOException
+	 *             if reader can't read underlying stream
+	 * @throws InvalidDataSetException
+	 *             if invalid/undefined data set is encountered
+	 */
+	public void readFrom(IIMReader reader, int recover, int... dataSets) throws IOException, InvalidDataSetException {
+		readFrom(reader, recover, new Projection(dataSets, dsiFactory, stopAfter9_10));
+	}
+
+	private void readFrom(IIMReader reader, int recover, Projection projection) throws IOException,
+			InvalidDataSetException {
+		// Skip unsupported data sets by length instead of recovering
+		int unsupportedDataSets = reader.getUnsupportedDataSets();
+		if (recoverFromUnsupportedDataSet && unsupportedDataSets == IIMReader.UNSUPPORTED_THROW) {
+			reader.setUnsupportedDataSets(IIMReader.UNSUPPORTED_SKIP);
+		}
+		try {
+			readFrom0(reader, recover, projection);
+		} finally {
+			reader.setUnsupportedDataSets(unsupportedDataSets);
+		}
+	}
+
+	private void readFrom0(IIMReader reader, int recover, Projection projection) throws IOException,
+			InvalidDataSetException {
 		final boolean doLog = log != null;
 		for (;;) {
 			try {
-				DataSet ds = reader.read();
+				DataSet ds = projection != null ? reader.read(projection) : reader.read();
 				if (ds == null) {
 					break;
 				}
@@ -306,7 +552,13 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 					}
 				}
 
-				dataSets.add(ds);
+				if (projection == null) {
+					addIndexed(ds);
+				} else if (projection.isWanted(info.getDataSetNumber())) {
+					addIndexed(ds);
+					if (projection.found(info.getDataSetNumber()))
+						break;
+				}
 
 				if (stopAfter9_10 && info.getDataSetNumber() == IIM.DS(9, 10))
 					break;
@@ -357,16 +609,20 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	}
 
 	public boolean remove(int dataSet) {
-		boolean result = false;
+		if (find(dataSet).isEmpty()) {
+			return false;
+		}
 		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
 			DataSet ds = i.next();
 			DataSetInfo info = ds.getInfo();
 			if (info.getDataSetNumber() == dataSet) {
 				i.remove();
-				result = true;
 			}
 		}
-		return result;
+		if (index != null && dataSet >= 0 && dataSet < INDEX_SIZE) {
+			index[dataSet] = null;
+		}
+		return true;
 	}
 
 	public boolean removeRecord(int record) {
@@ -379,15 +635,25 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 				result = true;
 			}
 		}
+		if (result && index != null && record >= 0 && record < INDEX_SIZE >> 8) {
+			for (int ds = record << 8, end = ds + 256; ds < end; ++ds) {
+				index[ds] = null;
+			}
+		}
 		return result;
 	}
 
 	/**
+	 * Sets data sets of this IIM file. Passed list is copied, so later changes
+	 * to it aren't reflected in this IIM file. Use list returned by
+	 * {@link #getDataSets()} to modify data sets.
+	 *
 	 * @param dataSets
 	 *            The dataSets to set.
 	 */
 	public void setDataSets(List<DataSet> dataSets) {
-		this.dataSets = dataSets;
+		this.dataSets = new ArrayList<DataSet>(dataSets);
+		this.index = null;
 	}
 
 	/**
@@ -459,7 +725,8 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	}
 
 	/**
-	 * Writes this IIMFile to writer.
+	 * Writes this IIMFile to writer. All data sets are written as a single
+	 * batch.
 	 *
 	 * @param writer
 	 *            writer to write to
@@ -467,17 +734,67 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 *             if file can't be written to
 	 */
 	public void writeTo(IIMWriter writer) throws IOException {
-		final boolean doLog = log != null;
-		for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
-			DataSet ds = i.next();
-			writer.write(ds);
-			if (doLog) {
-				log.debug("Wrote data set " + ds);
+		writer.writeAll(dataSets);
+		if (log != null) {
+			for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+				log.debug("Wrote data set " + i.next());
+			}
+		}
+	}
+
+	private void addIndexed(DataSet ds) {
+		dataSets.add(ds);
+		if (index != null) {
+			addToIndex(index, ds);
+		}
+	}
+
+	private static void addToIndex(Chain[] index, DataSet ds) {
+		int dsn = ds.getInfo().getDataSetNumber();
+		if (dsn >= 0 && dsn < INDEX_SIZE) {
+			Chain chain = index[dsn];
+			if (chain == null) {
+				index[dsn] = chain = new Chain();
+			}
+			chain.add(ds);
+		}
+	}
+
+	/**
+	 * Finds all data sets with a given number, in order they were added.
+	 */
+	private List<DataSet> find(int dataSet) {
+		if (dataSet < 0 || dataSet >= INDEX_SIZE) {
+			// Data sets outside of records 0-9 aren't indexed
+			List<DataSet> result = new ArrayList<DataSet>();
+			for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+				DataSet ds = i.next();
+				if (ds.getInfo().getDataSetNumber() == dataSet) {
+					result.add(ds);
+				}
 			}
+			return result;
 		}
+
+		Chain[] idx = index;
+		if (idx == null) {
+			// Rebuild index
+			idx = new Chain[INDEX_SIZE];
+			for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+				addToIndex(idx, i.next());
+			}
+			index = idx;
+		}
+		Chain chain = idx[dataSet];
+		return chain != null ? chain : Collections.<DataSet> emptyList();
+	}
+
+	private DataSet first(int dataSet) {
+		List<DataSet> found = find(dataSet);
+		return found.isEmpty() ? null : found.get(0);
 	}
 
-	private Object getData(DataSet ds) throws SerializationException {
+	Object getData(DataSet ds) throws SerializationException {
 		DataSetInfo info = ds.getInfo();
 		Serializer s = info.getSerializer();
 		Object result;
@@ -513,7 +830,8 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	}
 
 	/**
-	 * Checks all data sets in a given record for constraint violations.
+	 * Checks all data sets in a given record for constraint violations. Data
+	 * set values aren't deserialized.
 	 *
 	 * @param record
 	 *            IIM record (1,2,3, ...) to check
@@ -521,33 +839,155 @@ public class IIMFile extends DefaultSerializationContext implements Serializable
 	 * @return list of constraint violations, empty set if IIM file is valid
 	 */
 	public Set<ConstraintViolation> validate(int record) {
-		Set<ConstraintViolation> errors = new LinkedHashSet<ConstraintViolation>();
-		for (int ds = 0; ds < 250; ++ds) {
-			try {
-				DataSetInfo dataSetInfo = dsiFactory.create(IIM.DS(record, ds));
-				errors.addAll(validate(dataSetInfo));
-			} catch (InvalidDataSetException ignored) {
-				// DataSetFactory doesn't know about this ds, so will skip it
-			}
-		}
-		return errors;
+		return validate(record, false);
+	}
+
+	/**
+	 * Checks all data sets in a given record for constraint violations,
+	 * optionally reporting values that can't be deserialized.
+	 *
+	 * @param record
+	 *            IIM record (1,2,3, ...) to check
+	 * @param checkValues
+	 *            true to deserialize values and report invalid ones
+	 *
+	 * @return list of constraint violations, empty set if IIM file is valid
+	 */
+	public Set<ConstraintViolation> validate(int record, boolean checkValues) {
+		return IIMValidator.forFactory(dsiFactory, checkValues).validate(this, record);
 	}
 
 	/**
 	 * Checks all data sets in IIM records 1, 2 and 3 for constraint violations.
+	 * Data set values aren't deserialized.
 	 *
 	 * @return list of constraint violations, empty set if IIM file is valid
 	 */
 	public Set<ConstraintViolation> validate() {
-		Set<ConstraintViolation> errors = new LinkedHashSet<ConstraintViolation>();
-		for (int record = 1; record <= 3; ++record) {
-			errors.addAll(validate(record));
+		return validate(false);
+	}
+
+	/**
+	 * Checks all data sets in IIM records 1, 2 and 3 for constraint violations,
+	 * optionally reporting values that can't be deserialized.
+	 *
+	 * @param checkValues
+	 *            true to deserialize values and report invalid ones
+	 *
+	 * @return list of constraint violations, empty set if IIM file is valid
+	 */
+	public Set<ConstraintViolation> validate(boolean checkValues) {
+		return IIMValidator.forFactory(dsiFactory, checkValues).validate(this);
+	}
+
+	private static final int ALL_RECORDS = -1;
+
+	/** Number of index slots, covering records 0-9 */
+	private static final int INDEX_SIZE = 10 << 8;
+
+	/**
+	 * Data sets with a same number, in insertion order.
+	 */
+	private static final class Chain extends ArrayList<DataSet> {
+
+		private static final long serialVersionUID = About.SERIAL_VERSION_UID;
+	}
+
+	/**
+	 * List view of data sets that invalidates data set index on modification.
+	 */
+	private class DataSetList extends AbstractList<DataSet> {
+
+		public void add(int i, DataSet ds) {
+			dataSets.add(i, ds);
+			index = null;
 		}
-		return errors;
+
+		public DataSet get(int i) {
+			return dataSets.get(i);
+		}
+
+		public DataSet remove(int i) {
+			DataSet result = dataSets.remove(i);
+			index = null;
+			return result;
+		}
+
+		public DataSet set(int i, DataSet ds) {
+			DataSet result = dataSets.set(i, ds);
+			index = null;
+			return result;
+		}
+
+		public int size() {
+			return dataSets.size();
+		}
+	}
+
+	/**
+	 * Filter for projection reads. Coded character set is always read, so
+	 * string values can be deserialized, and so is 9:10 if reading stops
+	 * after it.
+	 */
+	private static final class Projection implements DataSetFilter {
+
+		Projection(int[] dataSets, DataSetInfoFactory dsiFactory, boolean stopAfter9_10) {
+			this.stopAfter9_10 = stopAfter9_10;
+			for (int ds : dataSets) {
+				if (ds < 0 || ds >= INDEX_SIZE || wanted[ds]) {
+					continue;
+				}
+				wanted[ds] = true;
+				try {
+					DataSetInfo info = IIMReader.find(dsiFactory, ds);
+					if (info != null && !info.isRepeatable()) {
+						continue;
+					}
+				} catch (InvalidDataSetException ignored) {
+					// Unknown data sets could repeat
+				}
+				repeatable = true;
+			}
+			for (boolean w : wanted) {
+				if (w) {
+					++remaining;
+				}
+			}
+		}
+
+		public boolean accept(int dataSet) {
+			return dataSet == IIM.DS(1, 90) || stopAfter9_10 && dataSet == IIM.DS(9, 10) || isWanted(dataSet);
+		}
+
+		boolean isWanted(int dataSet) {
+			return dataSet >= 0 && dataSet < INDEX_SIZE && wanted[dataSet];
+		}
+
+		/**
+		 * Marks a wanted data set as found.
+		 *
+		 * @return true if all wanted data sets were found and none of them
+		 *         can repeat
+		 */
+		boolean found(int dataSet) {
+			if (!found[dataSet]) {
+				found[dataSet] = true;
+				--remaining;
+			}
+			return remaining == 0 && !repeatable;
+		}
+
+		private final boolean[] found = new boolean[INDEX_SIZE];
+		private int remaining;
+		private boolean repeatable;
+		private final boolean stopAfter9_10;
+		private final boolean[] wanted = new boolean[INDEX_SIZE];
 	}
 
 	private SerializationContext activeSerializationContext = this;
 	private List<DataSet> dataSets = new ArrayList<DataSet>();
+	private transient List<DataSet> dataSetsView;
+	private transient Chain[] index;
 	private DataSetInfoFactory dsiFactory;
 	private LoggerAdapter log;
 	private boolean recoverFromIIMFormat = true;
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.nmote.iim4j.dataset.DataSet;
+
+/**
+ * IIMFilePublisher splits a stream of IIM objects, each ended by data set 9:10,
+ * into IIMFile instances and publishes them to a single subscriber. Objects
+ * are parsed on an executor into a bounded prefetch queue, and delivered to
+ * subscriber by a separate task, so a next object is parsed while subscriber
+ * processes a previous one. Parsing starts with a first request and stops
+ * while the queue is full, so a slow subscriber is never flooded. Subscriber
+ * is called sequentially from executor threads.
+ * <p>
+ * IIMFilePublisher, Subscriber and Subscription declare the same methods as
+ * org.reactivestreams Publisher, Subscriber and Subscription and follow their
+ * rules, so adapters to Reactive Streams or java.util.concurrent.Flow only
+ * delegate each call.
+ */
+public class IIMFilePublisher {
+
+	/**
+	 * Receives elements, see org.reactivestreams.Subscriber.
+	 *
+	 * @param <T>
+	 *            element type
+	 */
+	public interface Subscriber<T> {
+
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T t);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * Links a publisher and a subscriber, see
+	 * org.reactivestreams.Subscription.
+	 */
+	public interface Subscription {
+
+		void request(long n);
+
+		void cancel();
+	}
+
+	/** Default number of objects parsed ahead of delivery */
+	public static final int DEFAULT_PREFETCH = 2;
+
+	public IIMFilePublisher(IIMReader reader, Executor executor) {
+		this(reader, IIMFile::new, executor);
+	}
+
+	public IIMFilePublisher(IIMReader reader, Supplier<IIMFile> fileFactory, Executor executor) {
+		this(reader, fileFactory, executor, DEFAULT_PREFETCH);
+	}
+
+	/**
+	 * Creates a publisher.
+	 *
+	 * @param reader
+	 *            data sets source
+	 * @param fileFactory
+	 *            creates configured IIMFile for each object; files should stop
+	 *            reading after 9:10, otherwise whole stream is published as a
+	 *            single file
+	 * @param executor
+	 *            executor used for parsing and calling subscriber; parsing
+	 *            overlaps with subscriber only if executor has more than one
+	 *            thread
+	 * @param prefetch
+	 *            max number of parsed objects waiting for delivery
+	 */
+	public IIMFilePublisher(IIMReader reader, Supplier<IIMFile> fileFactory, Executor executor, int prefetch) {
+		if (reader == null) {
+			throw new NullPointerException("reader == null");
+		}
+		if (fileFactory == null) {
+			throw new NullPointerException("fileFactory == null");
+		}
+		if (executor == null) {
+			throw new NullPointerException("executor == null");
+		}
+		if (prefetch < 1) {
+			throw new IllegalArgumentException("prefetch: " + prefetch);
+		}
+		this.reader = reader;
+		this.fileFactory = fileFactory;
+		this.executor = executor;
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Subscribes to IIM files. A reader can only be read once, so subscribers
+	 * other than first one receive IllegalStateException through onError.
+	 *
+	 * @param subscriber
+	 *            subscriber to receive files
+	 */
+	public void subscribe(Subscriber<? super IIMFile> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber == null");
+		}
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Subscription() {
+				public void request(long n) {
+				}
+
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("already subscribed"));
+			return;
+		}
+		ReaderSubscription subscription = new ReaderSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * Parses files into a prefetch queue and delivers them while subscriber
+	 * has demand. Parsing and delivery are separate tasks, each run on
+	 * executor by a single thread at a time. Only parser touches reader, and
+	 * only emitter calls subscriber.
+	 */
+	private class ReaderSubscription implements Subscription {
+
+		ReaderSubscription(Subscriber<? super IIMFile> subscriber) {
+			this.subscriber = subscriber;
+			this.ready = new ArrayBlockingQueue<IIMFile>(prefetch);
+		}
+
+		public void request(long n) {
+			if (n <= 0) {
+				requestError = new IllegalArgumentException("non-positive request: " + n);
+			} else {
+				for (;;) {
+					long d = demand.get();
+					long r = d + n;
+					if (r < 0) {
+						r = Long.MAX_VALUE;
+					}
+					if (demand.compareAndSet(d, r)) {
+						break;
+					}
+				}
+			}
+			scheduleEmitter();
+		}
+
+		public void cancel() {
+			cancelled = true;
+			scheduleEmitter();
+			scheduleParser();
+		}
+
+		/**
+		 * Delivers parsed files and terminal signal. Parser is started when
+		 * subscriber has demand and nothing is parsed, and resumed whenever a
+		 * file is taken from the queue.
+		 */
+		private void emit() {
+			while (!done) {
+				if (cancelled) {
+					done = true;
+					ready.clear();
+					return;
+				}
+				Throwable e = requestError;
+				if (e != null) {
+					done = true;
+					cancelled = true;
+					ready.clear();
+					scheduleParser();
+					subscriber.onError(e);
+					return;
+				}
+
+				// Parser doesn't add files after it has finished
+				boolean finished = parsed;
+				if (ready.isEmpty()) {
+					if (finished) {
+						done = true;
+						if (failure != null) {
+							subscriber.onError(failure);
+						} else {
+							subscriber.onComplete();
+						}
+					} else if (demand.get() > 0) {
+						scheduleParser();
+					}
+					return;
+				}
+				if (demand.get() == 0) {
+					return;
+				}
+
+				IIMFile file = ready.poll();
+				if (demand.get() != Long.MAX_VALUE) {
+					demand.decrementAndGet();
+				}
+				scheduleParser();
+				subscriber.onNext(file);
+			}
+		}
+
+		/**
+		 * Parses files until prefetch queue is full, input is exhausted or
+		 * subscription is cancelled.
+		 */
+		private void parse() {
+			while (!closed) {
+				if (cancelled) {
+					close();
+					return;
+				}
+				if (ready.remainingCapacity() == 0) {
+					return;
+				}
+
+				IIMFile file;
+				try {
+					file = readNext();
+				} catch (Exception e) {
+					failure = e;
+					file = null;
+				}
+				if (file == null) {
+					close();
+					parsed = true;
+				} else {
+					ready.offer(file);
+				}
+				scheduleEmitter();
+			}
+		}
+
+		private void close() {
+			closed = true;
+			try {
+				reader.close();
+			} catch (IOException ignored) {
+			}
+		}
+
+		/**
+		 * Reads a next IIM object.
+		 *
+		 * @return file or null if there are no more objects
+		 */
+		private IIMFile readNext() throws Exception {
+			if (eof) {
+				return null;
+			}
+			IIMFile file = fileFactory.get();
+			file.readFrom(reader);
+			List<DataSet> dataSets = file.getDataSets();
+			if (dataSets.isEmpty()) {
+				return null;
+			}
+			// Object that doesn't end with 9:10 was ended by EOF
+			if (!file.isStopAfter9_10()
+					|| dataSets.get(dataSets.size() - 1).getInfo().getDataSetNumber() != IIM.DS(9, 10)) {
+				eof = true;
+			}
+			return file;
+		}
+
+		private void scheduleEmitter() {
+			if (emitterWip.getAndIncrement() == 0) {
+				try {
+					executor.execute(emitter);
+				} catch (RejectedExecutionException e) {
+					// Emitter is never run again, as emitterWip isn't
+					// released, so error is signalled from here
+					done = true;
+					cancelled = true;
+					scheduleParser();
+					subscriber.onError(e);
+				}
+			}
+		}
+
+		private void scheduleParser() {
+			if (parserWip.getAndIncrement() == 0) {
+				try {
+					executor.execute(parser);
+				} catch (RejectedExecutionException e) {
+					// Parser is never run again, as parserWip isn't released
+					if (!closed) {
+						failure = e;
+						close();
+						parsed = true;
+					}
+					scheduleEmitter();
+				}
+			}
+		}
+
+		/**
+		 * Runs a drain loop until no more runs were requested while it was
+		 * running.
+		 */
+		private void drain(AtomicInteger wip, Runnable loop) {
+			int missed = 1;
+			for (;;) {
+				loop.run();
+				missed = wip.addAndGet(-missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+
+		private volatile boolean cancelled;
+		private boolean closed;
+		private final AtomicLong demand = new AtomicLong();
+		private boolean done;
+		private final Runnable emitter = () -> drain(this.emitterWip, this::emit);
+		private final AtomicInteger emitterWip = new AtomicInteger();
+		private boolean eof;
+		private volatile Throwable failure;
+		private volatile boolean parsed;
+		private final Runnable parser = () -> drain(this.parserWip, this::parse);
+		private final AtomicInteger parserWip = new AtomicInteger();
+		private final BlockingQueue<IIMFile> ready;
+		private volatile Throwable requestError;
+		private final Subscriber<? super IIMFile> subscriber;
+	}
+
+	private final Executor executor;
+	private final Supplier<IIMFile> fileFactory;
+	private final int prefetch;
+	private final IIMReader reader;
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+}
@@ -7,13 +7,26 @@ package com.nmote.iim4j;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.nmote.iim4j.dataset.ByteBufferDataSet;
 import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DataSetFilter;
 import com.nmote.iim4j.dataset.DataSetInfo;
 import com.nmote.iim4j.dataset.DataSetInfoFactory;
 import com.nmote.iim4j.dataset.DefaultDataSet;
+import com.nmote.iim4j.dataset.DefaultDataSetInfoFactory;
 import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.dataset.UnsupportedDataSetException;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
 import com.nmote.iim4j.stream.IIMInputStream;
+import com.nmote.iim4j.stream.PositionalIIMInputStream;
+import com.nmote.iim4j.stream.StreamIIMInputStream;
+import com.nmote.iim4j.stream.TagScanner;
 
 /**
  * IIMParser reads IIM file producing DataSets. IIMReader works in a pull mode,
@@ -22,6 +35,22 @@ import com.nmote.iim4j.stream.IIMInputStream;
  */
 public class IIMReader {
 
+	/**
+	 * Unsupported data sets cause UnsupportedDataSetException, this is a
+	 * default.
+	 */
+	public static final int UNSUPPORTED_THROW = 0;
+
+	/**
+	 * Unsupported data sets are skipped using their length.
+	 */
+	public static final int UNSUPPORTED_SKIP = 1;
+
+	/**
+	 * Unsupported data sets are returned as data sets with binary values.
+	 */
+	public static final int UNSUPPORTED_BINARY = 2;
+
 	public IIMReader(IIMInputStream input) {
 		this(input, IIMDataSetInfoFactory.VERSION_4);
 	}
@@ -37,11 +66,259 @@ public class IIMReader {
 		this.dsiFactory = dsiFactory;
 	}
 
+	/**
+	 * Reads a next data set accepted by a filter. Other data sets are skipped
+	 * by seeking past their values, so they are never read into memory.
+	 *
+	 * @param filter
+	 *            filter selecting data sets to read
+	 * @return data set or null if EOF was reached
+	 * @throws IOException
+	 *             if input can't be read
+	 * @throws InvalidDataSetException
+	 *             if invalid/undefined data set is encountered
+	 */
+	public DataSet read(DataSetFilter filter) throws IOException, InvalidDataSetException {
+		this.filter = filter;
+		try {
+			return read();
+		} finally {
+			this.filter = null;
+		}
+	}
+
 	public DataSet read() throws IOException, InvalidDataSetException {
-		if (input == null) {
-			throw new IOException("input was closed");
+		// Errors after skipped data sets are recovered from a first skipped
+		// data set, as its length could be damaged
+		readStart = pos;
+		DataSet result;
+		do {
+			if (input == null) {
+				throw new IOException("input was closed");
+			}
+
+			skipped = false;
+			if (input.isCached() && input instanceof PositionalIIMInputStream) {
+				result = readPositional((PositionalIIMInputStream) input);
+			} else {
+				result = readSequential();
+			}
+		} while (skipped);
+		resynced = false;
+		return result;
+	}
+
+	/**
+	 * Returns a spliterator over remaining data sets. Values of data sets read
+	 * from cached inputs are loaded lazily.
+	 *
+	 * @param policy
+	 *            decides what happens when data set can't be read
+	 * @return ordered spliterator
+	 */
+	public Spliterator<DataSet> spliterator(ReadErrorPolicy policy) {
+		return new IIMReaderSpliterator(this, policy);
+	}
+
+	/**
+	 * Returns a sequential stream of remaining data sets. Short-circuiting
+	 * operations like findFirst() stop reading input. Closing a stream closes
+	 * this reader.
+	 *
+	 * @param policy
+	 *            decides what happens when data set can't be read
+	 * @return stream of data sets
+	 */
+	public Stream<DataSet> stream(ReadErrorPolicy policy) {
+		return StreamSupport.stream(spliterator(policy), false).onClose(() -> {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Returns a sequential stream of remaining data sets. Read errors are
+	 * thrown as UncheckedIOException.
+	 *
+	 * @return stream of data sets
+	 * @see #stream(ReadErrorPolicy)
+	 */
+	public Stream<DataSet> stream() {
+		return stream(ReadErrorPolicy.THROW);
+	}
+
+	/**
+	 * Parses remaining data sets, pushing them to a visitor. Data set values
+	 * are passed as reused buffer views, without creating DataSet instances.
+	 * Data sets unknown to data set info factory are passed as well. Any
+	 * error, including truncated input, is reported to
+	 * {@link IIMVisitor#onError(IOException)} before parsing continues or
+	 * stops.
+	 *
+	 * @param visitor
+	 *            visitor to receive data sets
+	 * @throws IOException
+	 *             if visitor didn't recover from an error or recovery failed
+	 */
+	public void parse(IIMVisitor visitor) throws IOException {
+		int record = -1;
+		for (;;) {
+			if (input == null) {
+				return;
+			}
+
+			readStart = pos;
+			try {
+				if (input.isCached() && input instanceof PositionalIIMInputStream) {
+					PositionalIIMInputStream in = (PositionalIIMInputStream) input;
+					if (!readHeader(in)) {
+						close();
+						return;
+					}
+					int length = headerLength;
+					pos = headerValuePos + length;
+					if (visitor.accept(headerDataSet)) {
+						ByteBuffer payload;
+						if (in instanceof ByteBufferIIMInputStream) {
+							payload = payload((ByteBufferIIMInputStream) in, headerValuePos, length);
+						} else {
+							payload = payload(in, headerValuePos, length);
+						}
+						record = visit(visitor, record, payload);
+					}
+				} else {
+					synchronized (input) {
+						if (input.isCached()) {
+							input.seek(pos);
+						}
+						if (!readHeader()) {
+							close();
+							return;
+						}
+						int length = headerLength;
+						if (visitor.accept(headerDataSet)) {
+							ByteBuffer payload = payload(length);
+							pos = input.position();
+							record = visit(visitor, record, payload);
+						} else {
+							input.seek(input.position() + length);
+							pos = input.position();
+						}
+					}
+				}
+				resynced = false;
+			} catch (IOException e) {
+				if (!visitor.onError(e)) {
+					throw e;
+				}
+				if (!recover()) {
+					return;
+				}
+			}
 		}
+	}
 
+	private int visit(IIMVisitor visitor, int record, ByteBuffer payload) {
+		int r = headerDataSet >> 8;
+		if (r != record) {
+			visitor.onRecordBoundary(record, r);
+		}
+		visitor.onDataSet(headerDataSet, payload);
+		return r;
+	}
+
+	/**
+	 * Returns a reused view of a value in an in-memory input, without copying.
+	 */
+	private ByteBuffer payload(ByteBufferIIMInputStream in, long position, int length) throws IOException {
+		if (position + length > in.length()) {
+			throw new EOFException();
+		}
+		if (payloadView == null) {
+			// View of a whole input, positions match input positions
+			payloadView = in.slice(0, (int) in.length()).asReadOnlyBuffer();
+		}
+		payloadView.clear();
+		payloadView.position((int) position);
+		payloadView.limit((int) position + length);
+		return payloadView;
+	}
+
+	/**
+	 * Returns a reused view of a value read with positional reads.
+	 */
+	private ByteBuffer payload(PositionalIIMInputStream in, long position, int length) throws IOException {
+		ByteBuffer result = payloadBuffer(length);
+		if (readAhead(in, position, payloadArray, length) < length) {
+			throw new EOFException();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a reused view of a value read from a current input position.
+	 */
+	private ByteBuffer payload(int length) throws IOException {
+		ByteBuffer result = payloadBuffer(length);
+		for (int offset = 0; offset < length;) {
+			int r = input.read(payloadArray, offset, length - offset);
+			if (r == -1) {
+				throw new EOFException();
+			}
+			offset += r;
+		}
+		return result;
+	}
+
+	private ByteBuffer payloadBuffer(int length) {
+		if (payloadArray == null || payloadArray.length < length) {
+			payloadArray = new byte[Math.max(length, 256)];
+			payloadView = ByteBuffer.wrap(payloadArray).asReadOnlyBuffer();
+		}
+		payloadView.clear();
+		payloadView.limit(length);
+		return payloadView;
+	}
+
+	/**
+	 * Returns how unsupported data sets are handled.
+	 *
+	 * @return one of UNSUPPORTED_THROW, UNSUPPORTED_SKIP or UNSUPPORTED_BINARY
+	 */
+	public int getUnsupportedDataSets() {
+		return unsupportedDataSets;
+	}
+
+	/**
+	 * Controls how data sets unknown to data set info factory are handled.
+	 * Skipping or returning them as binary data sets doesn't throw and catch
+	 * exceptions, so dirty files can be read as fast as clean ones.
+	 *
+	 * @param unsupportedDataSets
+	 *            one of UNSUPPORTED_THROW, UNSUPPORTED_SKIP or
+	 *            UNSUPPORTED_BINARY
+	 */
+	public void setUnsupportedDataSets(int unsupportedDataSets) {
+		if (unsupportedDataSets < UNSUPPORTED_THROW || unsupportedDataSets > UNSUPPORTED_BINARY) {
+			throw new IllegalArgumentException("unsupportedDataSets: " + unsupportedDataSets);
+		}
+		this.unsupportedDataSets = unsupportedDataSets;
+	}
+
+	/**
+	 * Returns number of unsupported data sets that were skipped or returned as
+	 * binary data sets.
+	 *
+	 * @return unsupported data set count
+	 */
+	public int getUnsupportedCount() {
+		return unsupportedCount;
+	}
+
+	private DataSet readSequential() throws IOException, InvalidDataSetException {
 		synchronized (input) {
 			boolean cached = input.isCached();
 
@@ -51,47 +328,22 @@ public class IIMReader {
 				input.seek(pos);
 			}
 
-			int tag = input.read();
-			if (tag == -1) {
+			if (!readHeader()) {
 				// We've reached EOF, no more datasets to return
 				close();
 				return null;
 			}
 
-			if (tag != 28) {
-				throw new IIMFormatException("expected TAG 0x1C");
-			}
-
-			int recordNumber = readAndThrowEOF();
-			int dataSetNumber = readAndThrowEOF();
-
 			// Get a DataSetInfo
-			DataSetInfo info = dsiFactory.create((recordNumber << 8) | dataSetNumber);
-
-			// Length
-			int oc1 = readAndThrowEOF();
-			int oc2 = readAndThrowEOF();
+			DataSetInfo info = accept() ? createInfo(headerDataSet) : null;
+			int length = headerLength;
 
 			DataSet result = null;
-
-			int length = oc1 << 8 | oc2;
-			if (length > 32767) {
-				// Extended Tag
-				int count = length & 0x7FFF;
-				if (count < 1) {
-					throw new IIMFormatException("too short extended data set count: " + count);
-				}
-				if (count > 4) {
-					throw new IIMFormatException("too long extended data set count: " + count);
-				}
-				length = readAndThrowEOF();
-				for (int i = 1; i < count; ++i) {
-					length = (length << 8) | readAndThrowEOF();
-				}
-				// System.out.println("Extended: " + info);
-			}
-
-			if (cached) {
+			if (info == null || filter != null && !filter.accept(info.getDataSetNumber())) {
+				// Skip unsupported or filtered data set
+				input.seek(input.position() + length);
+				skipped = true;
+			} else if (cached) {
 				result = new CachedDataSet(input, input.position(), length, info);
 				input.seek(input.position() + length);
 			} else {
@@ -104,39 +356,265 @@ public class IIMReader {
 		}
 	}
 
+	/**
+	 * Reads a data set using positional reads, without locking or moving
+	 * input's position. Values are loaded lazily.
+	 */
+	private DataSet readPositional(PositionalIIMInputStream in) throws IOException, InvalidDataSetException {
+		if (!readHeader(in)) {
+			// We've reached EOF, no more datasets to return
+			close();
+			return null;
+		}
+
+		// Get a DataSetInfo
+		DataSetInfo info = accept() ? createInfo(headerDataSet) : null;
+		int length = headerLength;
+
+		DataSet result = null;
+		if (info == null || filter != null && !filter.accept(info.getDataSetNumber())) {
+			// Skip unsupported or filtered data set
+			skipped = true;
+		} else if (in instanceof ByteBufferIIMInputStream) {
+			// Data set value is a slice of in-memory buffer
+			ByteBuffer data = ((ByteBufferIIMInputStream) in).slice(headerValuePos, length);
+			result = new ByteBufferDataSet(info, data);
+		} else {
+			result = new CachedDataSet(in, headerValuePos, length, info);
+		}
+
+		pos = headerValuePos + length;
+
+		return result;
+	}
+
+	/**
+	 * Reads a data set header from a current input position, leaving input
+	 * positioned at a data set value. Header is read with bulk reads, so
+	 * buffered inputs serve it from their buffer.
+	 *
+	 * @return false if EOF was reached
+	 */
+	private boolean readHeader() throws IOException {
+		int n = readHeaderBytes(0, 5);
+		if (n == 0) {
+			return false;
+		}
+		int count = checkHeader(n);
+		if (count > 0 && readHeaderBytes(5, count) < count) {
+			throw new EOFException();
+		}
+		setHeader(count, input.position());
+		return true;
+	}
+
+	/**
+	 * Reads a data set header at pos with positional reads. Headers are
+	 * served from a read-ahead window owned by this reader, so input isn't
+	 * accessed for every data set.
+	 *
+	 * @return false if EOF was reached
+	 */
+	private boolean readHeader(PositionalIIMInputStream in) throws IOException {
+		int n = readAhead(in, pos, header, header.length);
+		if (n == 0) {
+			return false;
+		}
+		int count = checkHeader(n);
+		if (n < 5 + count) {
+			throw new EOFException();
+		}
+		setHeader(count, pos + 5 + count);
+		return true;
+	}
+
+	/**
+	 * Checks first n bytes of a header.
+	 *
+	 * @return number of extended length bytes following first five header
+	 *         bytes, or 0 if length isn't extended
+	 */
+	private int checkHeader(int n) throws IOException {
+		if (header[0] != 28) {
+			throw new IIMFormatException("expected TAG 0x1C");
+		}
+		if (n < 5) {
+			throw new EOFException();
+		}
+		int length = (header[3] & 0xFF) << 8 | header[4] & 0xFF;
+		if (length > 32767) {
+			// Extended Tag
+			int count = length & 0x7FFF;
+			checkExtendedCount(count);
+			return count;
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores data set number, value length and value position of a checked
+	 * header in headerDataSet, headerLength and headerValuePos.
+	 */
+	private void setHeader(int count, long valuePos) throws IIMFormatException {
+		int length;
+		if (count == 0) {
+			length = (header[3] & 0xFF) << 8 | header[4] & 0xFF;
+		} else {
+			length = 0;
+			for (int i = 5; i < 5 + count; ++i) {
+				length = (length << 8) | header[i] & 0xFF;
+			}
+		}
+		if (length < 0) {
+			throw new IIMFormatException("negative data set length");
+		}
+
+		headerDataSet = (header[1] & 0xFF) << 8 | header[2] & 0xFF;
+		headerLength = length;
+		headerValuePos = valuePos;
+	}
+
+	/**
+	 * Reads up to length bytes at a given position, from read-ahead window if
+	 * it holds them. Window is refilled only for reads that fit into it.
+	 *
+	 * @return number of bytes read, less than length only at EOF
+	 */
+	private int readAhead(PositionalIIMInputStream in, long position, byte[] data, int length) throws IOException {
+		long end = aheadStart + aheadLength;
+		boolean eof = aheadLength < ahead.length;
+		if (aheadLength < 0 || position < aheadStart || position > end || position + length > end && !eof) {
+			if (length > ahead.length) {
+				return readFully(in, position, data, length);
+			}
+			aheadStart = position;
+			aheadLength = readFully(in, position, ahead, ahead.length);
+			end = aheadStart + aheadLength;
+		}
+		int n = (int) Math.min(length, end - position);
+		System.arraycopy(ahead, (int) (position - aheadStart), data, 0, n);
+		return n;
+	}
+
+	/**
+	 * Reads up to length header bytes from a current input position, stopping
+	 * only at EOF.
+	 *
+	 * @return number of bytes read
+	 */
+	private int readHeaderBytes(int offset, int length) throws IOException {
+		int n = 0;
+		while (n < length) {
+			int r = input.read(header, offset + n, length - n);
+			if (r == -1) {
+				break;
+			}
+			n += r;
+		}
+		return n;
+	}
+
+	/**
+	 * Checks a filter before data set info is resolved, so unknown data sets
+	 * that weren't asked for are skipped by length. Headers found right after
+	 * recovering from error are always resolved.
+	 *
+	 * @return true if data set info should be resolved
+	 */
+	private boolean accept() {
+		return filter == null || resynced || filter.accept(headerDataSet);
+	}
+
+	/**
+	 * Creates a data set info according to unsupported data set handling mode.
+	 *
+	 * @return data set info, or null if data set should be skipped
+	 */
+	private DataSetInfo createInfo(int dataSet) throws InvalidDataSetException {
+		// Length of unsupported data set found right after recovering from
+		// error can't be trusted
+		if (unsupportedDataSets == UNSUPPORTED_THROW || resynced) {
+			return dsiFactory.create(dataSet);
+		}
+
+		DataSetInfo info = find(dsiFactory, dataSet);
+		if (info == null) {
+			++unsupportedCount;
+			if (unsupportedDataSets == UNSUPPORTED_BINARY) {
+				info = BINARY_FACTORY.create(dataSet);
+			}
+		}
+		return info;
+	}
+
+	private boolean isSupported(int dataSet) {
+		try {
+			return find(dsiFactory, dataSet) != null;
+		} catch (InvalidDataSetException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Looks up a data set info without throwing UnsupportedDataSetException.
+	 *
+	 * @return data set info or null if data set is unsupported
+	 */
+	static DataSetInfo find(DataSetInfoFactory dsiFactory, int dataSet) throws InvalidDataSetException {
+		if (dsiFactory instanceof IIMDataSetInfoFactory) {
+			return ((IIMDataSetInfoFactory) dsiFactory).find(dataSet);
+		}
+		try {
+			return dsiFactory.create(dataSet);
+		} catch (UnsupportedDataSetException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Tries to recover from errors that occured during last call to read.
-	 * Searches for next start or record tag (0x1C) in input stream. Can be
-	 * called only on cached inputs
+	 * Searches for next start or record tag (0x1C) followed by plausible data
+	 * set header (see {@link TagScanner}) of a data set known to data set info
+	 * factory in input stream, starting
+	 * from a byte after a position where last call to read started. Inputs
+	 * that aren't cached are searched from that byte if it
+	 * is still within input's look-ahead buffer (see
+	 * {@link StreamIIMInputStream}), otherwise from a current position.
 	 *
 	 * @return true if IIMReader has recovered from error and you can use read
 	 *         to read next dataset
 	 * @throws IOException
 	 *             if stream can't be read
-	 * @throws IllegalStateException
-	 *             if input isn't cached
 	 */
 	public boolean recover() throws IOException {
-		if (!input.isCached()) {
-			throw new IllegalStateException("can't recover using input that isn't cached");
+		if (input == null) {
+			throw new IOException("input was closed");
 		}
 
 		synchronized (input) {
 			// Seek a byte after last position
-			input.seek(pos + 1);
-
-			int tag = input.read();
-			while (tag != 28) {
-				if (tag == -1) {
-					// We've reached EOF, no more datasets to return
-					close();
-					return false;
+			if (input.isCached()) {
+				input.seek(readStart + 1);
+			} else {
+				try {
+					input.seek(readStart + 1);
+				} catch (IOException e) {
+					// Bytes were already discarded, search from current
+					// position
 				}
-				tag = input.read();
 			}
 
-			pos = input.position() - 1;
-			input.seek(pos);
+			// Unsupported data sets aren't accepted right after recovering,
+			// so they can't be resync points
+			long tag = TagScanner.find(input, this::isSupported);
+			if (tag == -1) {
+				// We've reached EOF, no more datasets to return
+				close();
+				return false;
+			}
+
+			pos = tag;
+			resynced = true;
 
 			return true;
 		}
@@ -154,12 +632,30 @@ public class IIMReader {
 		return data;
 	}
 
-	private int readAndThrowEOF() throws IOException {
-		int r = input.read();
-		if (r == -1) {
-			throw new EOFException();
+	/**
+	 * Reads up to length bytes from a given position, stopping only at EOF.
+	 *
+	 * @return number of bytes read
+	 */
+	static int readFully(PositionalIIMInputStream input, long position, byte[] data, int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			int r = input.read(position + offset, data, offset, length - offset);
+			if (r == -1) {
+				break;
+			}
+			offset += r;
+		}
+		return offset;
+	}
+
+	static void checkExtendedCount(int count) throws IIMFormatException {
+		if (count < 1) {
+			throw new IIMFormatException("too short extended data set count: " + count);
+		}
+		if (count > 4) {
+			throw new IIMFormatException("too long extended data set count: " + count);
 		}
-		return r;
 	}
 
 	public void close() throws IOException {
@@ -172,7 +668,24 @@ public class IIMReader {
 		}
 	}
 
+	static final DataSetInfoFactory BINARY_FACTORY = new DefaultDataSetInfoFactory();
+
+	private final byte[] ahead = new byte[4096];
+	private long aheadStart;
+	private int aheadLength = -1;
+	private final byte[] header = new byte[9];
+	private DataSetFilter filter;
+	private byte[] payloadArray;
+	private ByteBuffer payloadView;
+	private int headerDataSet;
+	private int headerLength;
+	private long headerValuePos;
+	private boolean resynced;
+	private boolean skipped;
+	private int unsupportedCount;
+	private int unsupportedDataSets = UNSUPPORTED_THROW;
 	private long pos = 0;
+	private long readStart = 0;
 	private IIMInputStream input;
 	private DataSetInfoFactory dsiFactory;
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -5,46 +5,62 @@
 
 package com.nmote.iim4j;
 
-import java.io.IOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import com.nmote.iim4j.dataset.DataSet;
-import com.nmote.iim4j.dataset.InvalidDataSetException;
 
 /**
  * IIMReaderIterator takes IIMReader and exposes it as
- * an Iterator over data sets.
+ * an Iterator over data sets. Errors are passed to a ReadErrorPolicy,
+ * by default reading stops at a first error.
  */
 public class IIMReaderIterator implements Iterator<DataSet> {
 
 	public IIMReaderIterator(IIMReader reader) {
+		this(reader, ReadErrorPolicy.STOP);
+	}
+
+	public IIMReaderIterator(IIMReader reader, ReadErrorPolicy policy) {
+		if (policy == null) {
+			throw new NullPointerException("policy == null");
+		}
 		this.reader = reader;
+		this.policy = policy;
 	}
 
+	/**
+	 * @throws UnsupportedOperationException
+	 *             always, data sets can't be removed from reader
+	 */
 	public void remove() {
+		throw new UnsupportedOperationException();
 	}
 
 	public boolean hasNext() {
-		try {
-			next = reader.read();
-			return next != null;
-		} catch (IOException e) {
-			next = null;
-			return false;
-		} catch (InvalidDataSetException e) {
-			next = null;
-			return false;
+		if (next == null && !done) {
+			try {
+				next = IIMReaderSpliterator.read(reader, policy);
+			} catch (RuntimeException e) {
+				done = true;
+				throw e;
+			}
+			done = next == null;
 		}
+		return next != null;
 	}
 
 	public DataSet next() {
-		if (next == null && !hasNext()) {
+		if (!hasNext()) {
 			throw new NoSuchElementException();
 		}
-		return next;
+		DataSet result = next;
+		next = null;
+		return result;
 	}
 
+	private boolean done;
 	private DataSet next;
+	private final ReadErrorPolicy policy;
 	private final IIMReader reader;
-}
\ No newline at end of file
+}
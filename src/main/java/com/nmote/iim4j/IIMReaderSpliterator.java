@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+
+/**
+ * IIMReaderSpliterator exposes IIMReader as a sequential, ordered Spliterator
+ * over data sets. Data sets are read one at a time, so short-circuiting stream
+ * operations stop reading early. Errors are passed to a ReadErrorPolicy.
+ */
+public class IIMReaderSpliterator implements Spliterator<DataSet> {
+
+	public IIMReaderSpliterator(IIMReader reader, ReadErrorPolicy policy) {
+		if (reader == null) {
+			throw new NullPointerException("reader == null");
+		}
+		if (policy == null) {
+			throw new NullPointerException("policy == null");
+		}
+		this.reader = reader;
+		this.policy = policy;
+	}
+
+	public boolean tryAdvance(Consumer<? super DataSet> action) {
+		if (done) {
+			return false;
+		}
+		DataSet ds;
+		try {
+			ds = read(reader, policy);
+		} catch (RuntimeException e) {
+			done = true;
+			throw e;
+		}
+		if (ds == null) {
+			done = true;
+			return false;
+		}
+		action.accept(ds);
+		return true;
+	}
+
+	/**
+	 * Returns null, data sets can only be read sequentially.
+	 */
+	public Spliterator<DataSet> trySplit() {
+		return null;
+	}
+
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Reads a next data set, passing errors to policy. Callers must not read
+	 * again after null is returned or an exception is thrown, as reader may
+	 * be closed.
+	 *
+	 * @return data set or null if there are no more data sets to read
+	 */
+	static DataSet read(IIMReader reader, ReadErrorPolicy policy) {
+		for (;;) {
+			Exception error;
+			try {
+				return reader.read();
+			} catch (IOException e) {
+				error = e;
+			} catch (InvalidDataSetException e) {
+				error = e;
+			}
+
+			if (!policy.onError(error)) {
+				return null;
+			}
+			try {
+				if (!reader.recover()) {
+					return null;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private boolean done;
+	private final ReadErrorPolicy policy;
+	private final IIMReader reader;
+}
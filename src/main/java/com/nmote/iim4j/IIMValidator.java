@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.nmote.iim4j.dataset.ConstraintViolation;
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.dataset.DataSetInfoFactory;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.serialize.SerializationException;
+
+/**
+ * IIMValidator checks IIM files for missing mandatory and repeated non
+ * repeatable data sets, and optionally for values of those data sets that
+ * can't be deserialized. Rules are compiled once from a data set info factory,
+ * and each file is checked in a single pass over its data sets. Instances are
+ * immutable and can be shared between threads.
+ */
+public class IIMValidator {
+
+	/**
+	 * Returns a shared validator for a given data set info factory, that
+	 * doesn't check data set values.
+	 *
+	 * @param dsiFactory
+	 *            data set info factory to take rules from
+	 * @return validator instance
+	 */
+	public static IIMValidator forFactory(DataSetInfoFactory dsiFactory) {
+		return forFactory(dsiFactory, false);
+	}
+
+	/**
+	 * Returns a shared validator for a given data set info factory.
+	 *
+	 * @param dsiFactory
+	 *            data set info factory to take rules from
+	 * @param checkValues
+	 *            true to report values that can't be deserialized
+	 * @return validator instance
+	 */
+	public static IIMValidator forFactory(DataSetInfoFactory dsiFactory, boolean checkValues) {
+		synchronized (validators) {
+			IIMValidator[] result = validators.get(dsiFactory);
+			if (result == null) {
+				result = new IIMValidator[2];
+				validators.put(dsiFactory, result);
+			}
+			int i = checkValues ? 1 : 0;
+			if (result[i] == null) {
+				result[i] = new IIMValidator(dsiFactory, checkValues);
+			}
+			return result[i];
+		}
+	}
+
+	/**
+	 * Compiles validation rules from a given data set info factory. Data set
+	 * values aren't checked.
+	 *
+	 * @param dsiFactory
+	 *            data set info factory to take rules from
+	 */
+	public IIMValidator(DataSetInfoFactory dsiFactory) {
+		this(dsiFactory, false);
+	}
+
+	/**
+	 * Compiles validation rules from a given data set info factory. If values
+	 * are checked, values of mandatory and non repeatable data sets that can't
+	 * be deserialized are reported as
+	 * {@link ConstraintViolation#INVALID_VALUE}, instead of other violations
+	 * of that data set.
+	 *
+	 * @param dsiFactory
+	 *            data set info factory to take rules from
+	 * @param checkValues
+	 *            true to report values that can't be deserialized
+	 */
+	public IIMValidator(DataSetInfoFactory dsiFactory, boolean checkValues) {
+		if (dsiFactory == null) {
+			throw new NullPointerException("dsiFactory == null");
+		}
+		this.checkValues = checkValues;
+		this.ruleIndex = new DataSetInfo[RECORDS << 8];
+		List<DataSetInfo> r = new ArrayList<DataSetInfo>();
+		for (int record = 0; record < RECORDS; ++record) {
+			for (int ds = 0; ds < 250; ++ds) {
+				try {
+					DataSetInfo info = IIMReader.find(dsiFactory, IIM.DS(record, ds));
+					// Skip data sets unknown to DataSetFactory
+					if (info != null && (info.isMandatory() || !info.isRepeatable())) {
+						r.add(info);
+						ruleIndex[info.getDataSetNumber()] = info;
+					}
+				} catch (InvalidDataSetException ignored) {
+					// DataSetFactory doesn't know about this ds, so will skip it
+				}
+			}
+		}
+		this.rules = r.toArray(new DataSetInfo[r.size()]);
+	}
+
+	/**
+	 * Checks all data sets in IIM records 1, 2 and 3 for constraint violations.
+	 *
+	 * @param file
+	 *            IIM file to check
+	 * @return list of constraint violations, empty set if IIM file is valid
+	 */
+	public Set<ConstraintViolation> validate(IIMFile file) {
+		return validate(file, 1, 3);
+	}
+
+	/**
+	 * Checks all data sets in a given record for constraint violations.
+	 *
+	 * @param file
+	 *            IIM file to check
+	 * @param record
+	 *            IIM record (1,2,3, ...) to check
+	 * @return list of constraint violations, empty set if IIM file is valid
+	 */
+	public Set<ConstraintViolation> validate(IIMFile file, int record) {
+		return validate(file, record, record);
+	}
+
+	private Set<ConstraintViolation> validate(IIMFile file, int firstRecord, int lastRecord) {
+		Set<ConstraintViolation> errors = new LinkedHashSet<ConstraintViolation>();
+
+		// Count data sets and check their values
+		int[] counts = new int[RECORDS << 8];
+		boolean[] invalid = null;
+		for (Iterator<DataSet> i = file.getDataSets().iterator(); i.hasNext();) {
+			DataSet ds = i.next();
+			int dsn = ds.getInfo().getDataSetNumber();
+			if (dsn < 0 || dsn >= counts.length) {
+				continue;
+			}
+			++counts[dsn];
+			DataSetInfo info = ruleIndex[dsn];
+			int record = dsn >> 8;
+			if (checkValues && info != null && record >= firstRecord && record <= lastRecord) {
+				if (invalid == null) {
+					invalid = new boolean[counts.length];
+				}
+				if (!invalid[dsn]) {
+					try {
+						file.getData(ds);
+					} catch (SerializationException e) {
+						invalid[dsn] = true;
+					}
+				}
+			}
+		}
+
+		// Check rules, in data set order
+		for (int i = 0; i < rules.length; ++i) {
+			DataSetInfo info = rules[i];
+			int dsn = info.getDataSetNumber();
+			int record = dsn >> 8;
+			if (record < firstRecord || record > lastRecord) {
+				continue;
+			}
+			if (invalid != null && invalid[dsn]) {
+				errors.add(new ConstraintViolation(info, ConstraintViolation.INVALID_VALUE));
+				continue;
+			}
+			int count = counts[dsn];
+			if (info.isMandatory() && count == 0) {
+				errors.add(new ConstraintViolation(info, ConstraintViolation.MANDATORY_MISSING));
+			}
+			if (!info.isRepeatable() && count > 1) {
+				errors.add(new ConstraintViolation(info, ConstraintViolation.REPEATABLE_REPEATED));
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Checks a list of IIM files in parallel using a passed executor. Executor
+	 * is owned by a caller and isn't shut down.
+	 *
+	 * @param files
+	 *            IIM files to check
+	 * @param executor
+	 *            executor to run checks on
+	 * @return list of constraint violations for each file, in same order as
+	 *         files
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for checks to complete
+	 */
+	public List<Set<ConstraintViolation>> validateAll(List<IIMFile> files, Executor executor)
+			throws InterruptedException {
+		List<Future<Set<ConstraintViolation>>> futures = new ArrayList<Future<Set<ConstraintViolation>>>(
+				files.size());
+		for (Iterator<IIMFile> i = files.iterator(); i.hasNext();) {
+			final IIMFile file = i.next();
+			FutureTask<Set<ConstraintViolation>> task = new FutureTask<Set<ConstraintViolation>>(
+					new Callable<Set<ConstraintViolation>>() {
+						public Set<ConstraintViolation> call() {
+							return validate(file);
+						}
+					});
+			executor.execute(task);
+			futures.add(task);
+		}
+
+		List<Set<ConstraintViolation>> result = new ArrayList<Set<ConstraintViolation>>(files.size());
+		for (Iterator<Future<Set<ConstraintViolation>>> i = futures.iterator(); i.hasNext();) {
+			try {
+				result.add(i.next().get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks a list of IIM files in parallel, using a common fork join pool.
+	 *
+	 * @param files
+	 *            IIM files to check
+	 * @return list of constraint violations for each file, in same order as
+	 *         files
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for checks to complete
+	 */
+	public List<Set<ConstraintViolation>> validateAll(List<IIMFile> files) throws InterruptedException {
+		return validateAll(files, ForkJoinPool.commonPool());
+	}
+
+	/** Number of IIM records, 0-9 */
+	private static final int RECORDS = 10;
+
+	/** Validators not checking and checking values, per factory */
+	private static final Map<DataSetInfoFactory, IIMValidator[]> validators = new WeakHashMap<DataSetInfoFactory, IIMValidator[]>();
+
+	private final boolean checkValues;
+	private final DataSetInfo[] ruleIndex;
+	private final DataSetInfo[] rules;
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * IIMVisitor receives data sets pushed by {@link IIMReader#parse(IIMVisitor)}.
+ * Payload buffers are views reused between callbacks and are valid only until
+ * a callback returns, so no objects are created per data set.
+ */
+public interface IIMVisitor {
+
+	/**
+	 * Checks if data set value should be read. Values of data sets that aren't
+	 * accepted are skipped.
+	 *
+	 * @param dataSet
+	 *            data set number (see {@link IIM#DS(int, int)})
+	 * @return true if onDataSet should be called for data set
+	 */
+	default boolean accept(int dataSet) {
+		return true;
+	}
+
+	/**
+	 * Called for each accepted data set.
+	 *
+	 * @param dataSet
+	 *            data set number (see {@link IIM#DS(int, int)})
+	 * @param payload
+	 *            read-only view of data set value, from position to limit
+	 */
+	void onDataSet(int dataSet, ByteBuffer payload);
+
+	/**
+	 * Called before a first data set of each record.
+	 *
+	 * @param previousRecord
+	 *            number of previous record, -1 for first record
+	 * @param record
+	 *            number of record that starts
+	 */
+	void onRecordBoundary(int previousRecord, int record);
+
+	/**
+	 * Called when IIM data can't be read or parsed.
+	 *
+	 * @param e
+	 *            read or format error
+	 * @return true to recover (see {@link IIMReader#recover()}) and continue
+	 *         parsing, false to stop parsing and throw e
+	 */
+	boolean onError(IOException e);
+}
@@ -6,18 +6,35 @@
 package com.nmote.iim4j;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
 
+import com.nmote.iim4j.dataset.ByteBufferDataSet;
 import com.nmote.iim4j.dataset.DataSet;
-import com.nmote.iim4j.dataset.DataSetInfo;
 import com.nmote.iim4j.stream.IIMOutputStream;
 
 /**
- * IIMWriter is used to write records to output stream.
+ * IIMWriter is used to write records to output stream. Data set headers and
+ * small payloads are collected in an internal buffer, so each write results
+ * in as few output stream writes as possible.
  */
 public class IIMWriter {
 
+	/** Default size of write buffer in bytes */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
 	public IIMWriter(IIMOutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public IIMWriter(IIMOutputStream out, int bufferSize) {
+		if (bufferSize < MAX_HEADER_LENGTH) {
+			throw new IllegalArgumentException("bufferSize < " + MAX_HEADER_LENGTH);
+		}
 		this.output = out;
+		this.buffer = new byte[bufferSize];
+		this.bufferView = ByteBuffer.wrap(buffer);
 	}
 
 	public void write(DataSet ds) throws IOException {
@@ -26,50 +43,160 @@ public class IIMWriter {
 		}
 
 		synchronized (output) {
-			// Write tag
-			output.write(0x1C);
-
-			// Write dataset identifaction
-			DataSetInfo info = ds.getInfo();
-			int dsn = info.getDataSetNumber();
-			output.write((dsn >> 8) & 0xFF);
-			output.write(dsn & 0xFF);
-
-			// Write length
-			int len = ds.getLength();
-			if (len <= 32767) {
-				output.write((len >> 8) & 0xFF);
-				output.write(len & 0xFF);
-			} else {
-				// Extended tag
-				int count = 1;
-				for (int i = len >> 8; i > 0; i >>= 8) {
-					++count;
-				}
-				output.write(0x80);
-				output.write(count);
-				for (int i = count - 1; i >= 0; --i) {
-					output.write((len >> (8 * i)) & 0xFF);
-				}
+			append(ds);
+			flushBuffer();
+		}
+	}
+
+	/**
+	 * Writes all data sets, locking output stream only once.
+	 *
+	 * @param dataSets
+	 *            data sets to write
+	 * @throws IOException
+	 *             if data sets can't be written
+	 */
+	public void writeAll(Collection<DataSet> dataSets) throws IOException {
+		if (output == null) {
+			throw new IOException("output was closed");
+		}
+
+		synchronized (output) {
+			for (Iterator<DataSet> i = dataSets.iterator(); i.hasNext();) {
+				append(i.next());
+			}
+			flushBuffer();
+		}
+	}
+
+	public void close() throws IOException {
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+	}
+
+	/**
+	 * Returns length of a data set header for a given data length.
+	 *
+	 * @param length
+	 *            data length in bytes
+	 * @return header length in bytes
+	 */
+	static int headerLength(int length) {
+		int result = 5;
+		if (length > 32767) {
+			// Extended tag
+			for (int i = length; i > 0; i >>= 8) {
+				++result;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Encodes data set header into a passed array.
+	 *
+	 * @return offset after last written byte
+	 */
+	static int encodeHeader(int dsn, int len, byte[] b, int off) {
+		// Write tag
+		b[off++] = 0x1C;
+
+		// Write dataset identifaction
+		b[off++] = (byte) (dsn >> 8);
+		b[off++] = (byte) dsn;
+
+		// Write length
+		if (len <= 32767) {
+			b[off++] = (byte) (len >> 8);
+			b[off++] = (byte) len;
+		} else {
+			// Extended tag
+			int count = headerLength(len) - 5;
+			b[off++] = (byte) 0x80;
+			b[off++] = (byte) count;
+			for (int i = count - 1; i >= 0; --i) {
+				b[off++] = (byte) (len >> (8 * i));
 			}
+		}
+		return off;
+	}
+
+	/**
+	 * Appends a data set to a buffer. If data set can't be written, buffer is
+	 * restored to its previous state, or emptied if this data set was already
+	 * partially written to output.
+	 */
+	private void append(DataSet ds) throws IOException {
+		int start = count;
+		int flushes = flushCount;
+		try {
+			append0(ds);
+		} catch (IOException e) {
+			count = flushes == flushCount ? start : 0;
+			throw e;
+		} catch (RuntimeException e) {
+			count = flushes == flushCount ? start : 0;
+			throw e;
+		}
+	}
 
+	private void append0(DataSet ds) throws IOException {
+		int len = ds.getLength();
+		if (count + MAX_HEADER_LENGTH > buffer.length) {
+			flushBuffer();
+		}
+		count = encodeHeader(ds.getInfo().getDataSetNumber(), len, buffer, count);
+
+		if (ds instanceof CachedDataSet && ((CachedDataSet) ds).isTransferableTo(output)) {
+			// Copy value with channel transfers, bypassing heap
+			flushBuffer();
+			((CachedDataSet) ds).writeDataTo(output);
+		} else if (len > buffer.length) {
+			// Value doesn't fit into buffer, write it directly
+			flushBuffer();
 			if (ds instanceof CachedDataSet) {
-				// Optimization for CachedDataSet
 				((CachedDataSet) ds).writeDataTo(output);
+			} else if (ds instanceof ByteBufferDataSet) {
+				((ByteBufferDataSet) ds).writeDataTo(output);
 			} else {
-				// Output data
 				output.write(ds.getData());
 			}
+		} else {
+			if (count + len > buffer.length) {
+				flushBuffer();
+			}
+			if (ds instanceof CachedDataSet) {
+				// Read value straight into buffer
+				bufferView.clear();
+				bufferView.position(count);
+				((CachedDataSet) ds).readDataTo(bufferView);
+			} else if (ds instanceof ByteBufferDataSet) {
+				bufferView.clear();
+				bufferView.position(count);
+				bufferView.put(((ByteBufferDataSet) ds).getByteBuffer());
+			} else {
+				System.arraycopy(ds.getData(), 0, buffer, count, len);
+			}
+			count += len;
 		}
 	}
 
-	public void close() throws IOException {
-		if (output != null) {
-			output.close();
-			output = null;
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			++flushCount;
+			output.write(buffer, 0, count);
+			count = 0;
 		}
 	}
 
+	private static final int MAX_HEADER_LENGTH = 9;
+
+	private final byte[] buffer;
+	private final ByteBuffer bufferView;
+	private int count;
+	private int flushCount;
 	private IIMOutputStream output;
 
 }
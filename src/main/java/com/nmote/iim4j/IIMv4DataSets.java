@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.dataset.DefaultDataSetInfo;
+import com.nmote.iim4j.serialize.SerializerFactory;
+
+/**
+ * Precompiled IIM version 4 data set infos. Generated from IIMv4.txt by
+ * IIMDataSetInfoFactory.main("table"), don't edit. The build doesn't
+ * regenerate it, IIMv4DataSetsTest is the only check that it agrees with
+ * IIMv4.txt.
+ */
+final class IIMv4DataSets {
+
+	private IIMv4DataSets() {
+	}
+
+	static DataSetInfo[] create(SerializerFactory sf) {
+		DataSetInfo[] ds = new DataSetInfo[10 << 8];
+		add(ds, sf, 1, 0, "Model Version", "BinaryNumber(2)", false, true);
+		add(ds, sf, 1, 5, "Destination", "String(1024)", true, false);
+		add(ds, sf, 1, 20, "File Format", "BinaryNumber(2)", false, true);
+		add(ds, sf, 1, 22, "File Format Version", "BinaryNumber(2)", false, true);
+		add(ds, sf, 1, 30, "Service Identifier", "String(10)", false, true);
+		add(ds, sf, 1, 40, "Envelope Number", "Number(8)", false, true);
+		add(ds, sf, 1, 50, "Product", "String(32)", true, false);
+		add(ds, sf, 1, 60, "Envelope Priority", "Number(1)", false, false);
+		add(ds, sf, 1, 70, "Date Sent", "Date(yyyyMMdd)", false, true);
+		add(ds, sf, 1, 80, "Time Sent", "Date(HHmmssZ)", false, false);
+		add(ds, sf, 1, 90, "Coded Character Set", "CodedCharset", false, false);
+		add(ds, sf, 1, 100, "UNO", "String(80)", false, false);
+		add(ds, sf, 1, 120, "ARM Identifier", "BinaryNumber(2)", false, false);
+		add(ds, sf, 1, 122, "ARM Version", "BinaryNumber(2)", false, false);
+		add(ds, sf, 2, 0, "Record Version", "BinaryNumber(2)", false, true);
+		add(ds, sf, 2, 3, "Object Type Reference Object", "String(67)", false, false);
+		add(ds, sf, 2, 4, "ObjectAttribute Reference", "String(68)", true, false);
+		add(ds, sf, 2, 5, "Object Name", "String(64)", false, false);
+		add(ds, sf, 2, 7, "Edit Status", "String(64)", false, false);
+		add(ds, sf, 2, 8, "Editorial Update", "Number(2)", false, false);
+		add(ds, sf, 2, 10, "Urgency", "Number(2)", false, false);
+		add(ds, sf, 2, 12, "Subject Reference", "String(236)", true, false);
+		add(ds, sf, 2, 15, "Category", "String(3)", true, false);
+		add(ds, sf, 2, 20, "Supplemental Category", "String(32)", true, false);
+		add(ds, sf, 2, 22, "Fixture Identifier", "String(32)", false, false);
+		add(ds, sf, 2, 25, "Keywords", "String(64)", true, false);
+		add(ds, sf, 2, 26, "Content Location Code", "String(3)", true, false);
+		add(ds, sf, 2, 27, "Content Location Name", "String(64)", true, false);
+		add(ds, sf, 2, 30, "Release Date", "Date(yyyyMMdd)", false, false);
+		add(ds, sf, 2, 35, "Release Time", "Date(HHmmssZ)", false, false);
+		add(ds, sf, 2, 37, "Expiration Date", "Date(yyyyMMdd)", false, false);
+		add(ds, sf, 2, 38, "Expiration Time", "Date(HHmmssZ)", false, false);
+		add(ds, sf, 2, 40, "Special Instructions", "String(256)", false, false);
+		add(ds, sf, 2, 42, "Action Advised", "Number(2)", false, false);
+		add(ds, sf, 2, 45, "Reference Service", "String(10)", true, false);
+		add(ds, sf, 2, 47, "Reference Date", "Date(yyyyMMdd)", true, false);
+		add(ds, sf, 2, 50, "Reference Number", "Number(8)", true, false);
+		add(ds, sf, 2, 55, "Date Created", "Date(yyyyMMdd)", false, false);
+		add(ds, sf, 2, 60, "Time Created", "Date(HHmmssZ)", false, false);
+		add(ds, sf, 2, 62, "Digital Creation Date", "Date(yyyyMMdd)", false, false);
+		add(ds, sf, 2, 63, "Digital Creation Time", "Date(HHmmssZ)", false, false);
+		add(ds, sf, 2, 65, "Originating Program", "String(32)", false, false);
+		add(ds, sf, 2, 70, "Program Version", "String(10)", false, false);
+		add(ds, sf, 2, 75, "Object Cycle", "String(1)", false, false);
+		add(ds, sf, 2, 80, "By-line", "String(32)", true, false);
+		add(ds, sf, 2, 85, "By-line Title", "String(32)", true, false);
+		add(ds, sf, 2, 90, "City", "String(32)", false, false);
+		add(ds, sf, 2, 92, "Sub-location", "String(32)", false, false);
+		add(ds, sf, 2, 95, "Province/State", "String(32)", false, false);
+		add(ds, sf, 2, 100, "Country/Primary Location Code", "String(3)", false, false);
+		add(ds, sf, 2, 101, "Country/Primary Location Name", "String(64)", false, false);
+		add(ds, sf, 2, 103, "Original Transmission Reference", "String(32)", false, false);
+		add(ds, sf, 2, 105, "Headline", "String(256)", false, false);
+		add(ds, sf, 2, 110, "Credit", "String(32)", false, false);
+		add(ds, sf, 2, 115, "Source", "String(32)", false, false);
+		add(ds, sf, 2, 116, "Copyright Notice", "String(128)", false, false);
+		add(ds, sf, 2, 118, "Contact", "String(128)", true, false);
+		add(ds, sf, 2, 120, "Caption/Abstract", "String(2000)", false, false);
+		add(ds, sf, 2, 122, "Writer/Editor", "String(32)", true, false);
+		add(ds, sf, 2, 125, "Rasterized Caption", "Binary(7360)", false, false);
+		add(ds, sf, 2, 130, "Image Type", "String(2)", false, false);
+		add(ds, sf, 2, 131, "Image Orientation", "String(1)", false, false);
+		add(ds, sf, 2, 135, "Language Identifier", "String(3)", false, false);
+		add(ds, sf, 2, 150, "Audio Type", "String(2)", false, false);
+		add(ds, sf, 2, 151, "Audio Sampling Rate", "Number(6)", false, false);
+		add(ds, sf, 2, 152, "Audio Sampling Resolution", "Number(2)", false, false);
+		add(ds, sf, 2, 153, "Audio Duration", "String(6)", false, false);
+		add(ds, sf, 2, 154, "Audio Outcue", "String(64)", false, false);
+		add(ds, sf, 2, 200, "ObjectData Preview File Format", "BinaryNumber(2)", false, false);
+		add(ds, sf, 2, 201, "ObjectData Preview File Format Version", "BinaryNumber(2)", false, false);
+		add(ds, sf, 2, 202, "ObjectData Preview Data", "Binary(256000)", false, false);
+		add(ds, sf, 3, 0, "Record Version", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 10, "Picture Number", "Binary(16)", false, true);
+		add(ds, sf, 3, 20, "Pixels Per Line In Scanning Direction", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 30, "Number of Lines", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 40, "Pixel Size In Scanning Direction", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 50, "Pixel Size Perpendicular To Scanning Direction", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 55, "Supplement Type", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 60, "Colour Representation", "BinaryNumber(2)", false, true);
+		add(ds, sf, 3, 64, "Interchange Colour Space", "Binary(1)", false, false);
+		add(ds, sf, 3, 65, "Colour Sequence", "Binary(3)", false, false);
+		add(ds, sf, 3, 66, "ICC Input Colour Profile", "Binary(524288)", false, false);
+		add(ds, sf, 3, 70, "Colour Calibration Matrix Table", "Binary(524288)", false, false);
+		add(ds, sf, 3, 80, "Lookup Table", "Binary(131072)", false, false);
+		add(ds, sf, 3, 84, "Number of Index Entries", "BinaryNumber(2)", false, false);
+		add(ds, sf, 3, 85, "ColourPalette", "Binary(524288)", false, false);
+		add(ds, sf, 3, 86, "Number of Bits per Sample", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 90, "Sampling Structure", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 100, "Scanning Direction", "BinaryNumber(1)", false, true);
+		add(ds, sf, 3, 102, "Image Rotation", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 110, "Data Compression Method", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 120, "Quantisation Method", "Binary(4)", false, false);
+		add(ds, sf, 3, 125, "End Points", "Binary", false, true);
+		add(ds, sf, 3, 130, "Excursion Tolerance", "BinaryNumber(1)", false, false);
+		add(ds, sf, 3, 135, "Bits Per Component", "Binary", false, false);
+		add(ds, sf, 3, 140, "Maximum Density Range", "BinaryNumber(2)", false, false);
+		add(ds, sf, 3, 145, "Gamma Compensated Value", "BinaryNumber(2)", false, false);
+		add(ds, sf, 7, 10, "Size Mode", "BinaryNumber(1)", false, true);
+		add(ds, sf, 7, 20, "Max Subfile Size", "VarBinaryNumber", false, true);
+		add(ds, sf, 7, 90, "ObjectData Size Announced", "VarBinaryNumber", false, false);
+		add(ds, sf, 7, 95, "Maximum ObjectData Size", "VarBinaryNumber", false, false);
+		add(ds, sf, 8, 10, "Subfile", "Binary", true, false);
+		add(ds, sf, 9, 10, "Confirmed ObjectData Size", "VarBinaryNumber", false, false);
+		return ds;
+	}
+
+	private static void add(DataSetInfo[] ds, SerializerFactory sf, int record, int dataSet, String name,
+			String serializer, boolean repeatable, boolean mandatory) {
+		int dsn = record << 8 | dataSet;
+		ds[dsn] = new DefaultDataSetInfo(dsn, name, sf.create(serializer), repeatable, mandatory);
+	}
+}
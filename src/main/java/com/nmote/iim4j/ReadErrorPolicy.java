@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * ReadErrorPolicy decides what happens when {@link IIMReaderIterator} or
+ * {@link IIMReaderSpliterator} fails to read a data set.
+ */
+public interface ReadErrorPolicy {
+
+	/** Stops reading, as if end of input was reached */
+	ReadErrorPolicy STOP = e -> false;
+
+	/** Recovers from errors (see {@link IIMReader#recover()}) and continues */
+	ReadErrorPolicy RECOVER = e -> true;
+
+	/** Throws UncheckedIOException wrapping an error */
+	ReadErrorPolicy THROW = e -> {
+		throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+	};
+
+	/**
+	 * Called when data set can't be read.
+	 *
+	 * @param e
+	 *            IOException or InvalidDataSetException thrown by reader
+	 * @return true to recover and continue reading, false to stop reading
+	 */
+	boolean onError(Exception e);
+}
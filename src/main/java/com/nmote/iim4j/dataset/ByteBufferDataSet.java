@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.dataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.nmote.iim4j.serialize.NumericSerializer;
+import com.nmote.iim4j.serialize.SerializationException;
+import com.nmote.iim4j.serialize.Serializer;
+import com.nmote.iim4j.stream.ChannelIIMOutputStream;
+import com.nmote.iim4j.stream.IIMOutputStream;
+
+/**
+ * ByteBufferDataSet is a DataSet implementation whose raw data is a slice of
+ * a ByteBuffer. Byte array returned by getData() is lazily copied from a
+ * buffer on a first call, after that and after setData() data set is backed
+ * by that array.
+ */
+public class ByteBufferDataSet extends DefaultDataSet {
+
+	/**
+	 * Creates DataSet instance
+	 *
+	 * @param info
+	 *            meta data about a dataset instance
+	 * @param buffer
+	 *            raw binary data, from position to limit
+	 * @throws NullPointerException
+	 *             if info or buffer is null
+	 */
+	public ByteBufferDataSet(DataSetInfo info, ByteBuffer buffer) {
+		super(info);
+		if (buffer == null) {
+			throw new NullPointerException("buffer == null");
+		}
+		this.buffer = buffer.slice();
+	}
+
+	/**
+	 * Returns raw data as a read-only view of underlying buffer.
+	 *
+	 * @return raw binary data
+	 */
+	public ByteBuffer getByteBuffer() {
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Replaces raw data, underlying buffer isn't used anymore.
+	 *
+	 * @see com.nmote.iim4j.dataset.DefaultDataSet#setData(byte[])
+	 */
+	public void setData(byte[] data) {
+		synchronized (this) {
+			super.setData(data);
+			buffer = ByteBuffer.wrap(data);
+		}
+	}
+
+	/**
+	 * @see com.nmote.iim4j.dataset.DataSet#getData()
+	 */
+	public byte[] getData() {
+		synchronized (this) {
+			byte[] data = super.getData();
+			if (data == null) {
+				data = new byte[buffer.remaining()];
+				buffer.duplicate().get(data);
+				setData(data);
+			}
+			return data;
+		}
+	}
+
+	public int getLength() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Numbers are parsed directly from a backing array, without copying.
+	 */
+	public int getInt() throws SerializationException {
+		Serializer s = getInfo().getSerializer();
+		ByteBuffer b = buffer;
+		if (s instanceof NumericSerializer && b.hasArray()) {
+			return ((NumericSerializer) s).deserializeInt(b.array(), b.arrayOffset() + b.position(), b.remaining());
+		}
+		return super.getInt();
+	}
+
+	/**
+	 * Numbers are parsed directly from a backing array, without copying.
+	 */
+	public long getLong() throws SerializationException {
+		Serializer s = getInfo().getSerializer();
+		ByteBuffer b = buffer;
+		if (s instanceof NumericSerializer && b.hasArray()) {
+			return ((NumericSerializer) s).deserializeLong(b.array(), b.arrayOffset() + b.position(), b.remaining());
+		}
+		return super.getLong();
+	}
+
+	/**
+	 * Writes raw data to output stream. Buffer is written directly to a
+	 * channel or from a backing array without copying.
+	 *
+	 * @param out
+	 *            stream to write to
+	 * @throws IOException
+	 *             if data can't be written
+	 */
+	public void writeDataTo(IIMOutputStream out) throws IOException {
+		ByteBuffer b = buffer;
+		if (out instanceof ChannelIIMOutputStream) {
+			((ChannelIIMOutputStream) out).write(b.duplicate());
+		} else if (b.hasArray()) {
+			out.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+		} else {
+			out.write(getData());
+		}
+	}
+
+	private volatile ByteBuffer buffer;
+}
@@ -5,7 +5,9 @@
 
 package com.nmote.iim4j.dataset;
 
+import com.nmote.iim4j.serialize.NumericSerializer;
 import com.nmote.iim4j.serialize.SerializationException;
+import com.nmote.iim4j.serialize.Serializer;
 
 /**
  * DataSet is an instance of a DataSet in IIM record.
@@ -33,4 +35,34 @@ public interface DataSet {
 	 *             if raw data can't be deserialized
 	 */
 	Object getValue() throws SerializationException;
+
+	/**
+	 * @return numeric dataset value as int, implementations may deserialize
+	 *         it without boxing
+	 * @throws SerializationException
+	 *             if raw data can't be deserialized or isn't a number
+	 */
+	default int getInt() throws SerializationException {
+		Serializer s = getInfo().getSerializer();
+		if (s instanceof NumericSerializer) {
+			byte[] d = getData();
+			return ((NumericSerializer) s).deserializeInt(d, 0, d.length);
+		}
+		return DefaultDataSet.toNumber(getValue()).intValue();
+	}
+
+	/**
+	 * @return numeric dataset value as long, implementations may deserialize
+	 *         it without boxing
+	 * @throws SerializationException
+	 *             if raw data can't be deserialized or isn't a number
+	 */
+	default long getLong() throws SerializationException {
+		Serializer s = getInfo().getSerializer();
+		if (s instanceof NumericSerializer) {
+			byte[] d = getData();
+			return ((NumericSerializer) s).deserializeLong(d, 0, d.length);
+		}
+		return DefaultDataSet.toNumber(getValue()).longValue();
+	}
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.dataset;
+
+/**
+ * DataSetFilter selects data sets to read. Data sets that aren't accepted are
+ * skipped by their length, without reading their values.
+ */
+public interface DataSetFilter {
+
+	/**
+	 * @param dataSet
+	 *            data set number (see {@link com.nmote.iim4j.IIM#DS(int, int)})
+	 * @return true if data set should be read
+	 */
+	boolean accept(int dataSet);
+
+	/**
+	 * Creates a filter accepting given data sets.
+	 *
+	 * @param dataSets
+	 *            data set numbers to accept
+	 * @return filter instance
+	 */
+	static DataSetFilter of(int... dataSets) {
+		final boolean[] accepted = new boolean[10 << 8];
+		for (int ds : dataSets) {
+			if (ds >= 0 && ds < accepted.length) {
+				accepted[ds] = true;
+			}
+		}
+		return new DataSetFilter() {
+			public boolean accept(int dataSet) {
+				return dataSet >= 0 && dataSet < accepted.length && accepted[dataSet];
+			}
+		};
+	}
+}
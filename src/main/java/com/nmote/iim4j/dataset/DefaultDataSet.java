@@ -107,6 +107,13 @@ public class DefaultDataSet implements DataSet {
 		return value;
 	}
 
+	static Number toNumber(Object value) throws SerializationException {
+		if (!(value instanceof Number)) {
+			throw new SerializationException("not a number: " + value);
+		}
+		return (Number) value;
+	}
+
 	private DataSetInfo info;
 	private byte[] data;
 }
@@ -23,6 +23,8 @@ public class DefaultDataSetInfoFactory implements DataSetInfoFactory {
 		if (dataSetNumber < 0 || dataSetNumber > 255) {
 			throw new InvalidDataSetException("dataset number: " + dataSetNumber);
 		}
-		return new DefaultDataSetInfo(dataSet, "<unknown>", new BinarySerializer(null), true, false);
+		return new DefaultDataSetInfo(dataSet, "<unknown>", BINARY, true, false);
 	}
+
+	private static final BinarySerializer BINARY = new BinarySerializer(null);
 }
@@ -29,4 +29,9 @@ public class InvalidDataSetException extends Exception {
 	public InvalidDataSetException(String message, Throwable cause) {
 		super(message, cause);
 	}
+
+	protected InvalidDataSetException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
 }
\ No newline at end of file
@@ -22,4 +22,9 @@ public class UnsupportedDataSetException extends InvalidDataSetException {
 	public UnsupportedDataSetException(String message) {
 		super(message);
 	}
+
+	protected UnsupportedDataSetException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
 }
@@ -6,23 +6,41 @@
 package com.nmote.iim4j.serialize;
 
 /**
- * Serializer for binary encoded numbers.
+ * Serializer for binary encoded numbers. Numbers are unsigned big-endian
+ * values of up to 4 bytes. {@link #deserializeLong(byte[], int, int)} returns
+ * the whole range, {@link #deserializeInt(byte[], int, int)} throws for values
+ * above Integer.MAX_VALUE. For compatibility
+ * {@link #deserialize(byte[], SerializationContext)} still returns an Integer,
+ * so those values wrap to negative numbers, as if deserializeLong() result was
+ * cast to int.
  */
-public class BinaryNumberSerializer implements Serializer {
+public class BinaryNumberSerializer implements NumericSerializer {
 
 	public BinaryNumberSerializer(String def) {
 		length = def != null ? Integer.parseInt(def) : Integer.MAX_VALUE;
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
-		if (data.length > 4) {
-			throw new SerializationException("data too long: " + data.length);
+		return Integer.valueOf((int) deserializeLong(data, 0, data.length));
+	}
+
+	public int deserializeInt(byte[] data, int offset, int length) throws SerializationException {
+		long r = deserializeLong(data, offset, length);
+		if (r > Integer.MAX_VALUE) {
+			throw new SerializationException("number too large for int: " + r);
+		}
+		return (int) r;
+	}
+
+	public long deserializeLong(byte[] data, int offset, int length) throws SerializationException {
+		if (length > 4) {
+			throw new SerializationException("data too long: " + length);
 		}
-		int r = 0;
-		for (int i = 0; i < data.length; i++) {
-			r = (r << 8) | data[i];
+		long r = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			r = (r << 8) | data[i] & 0xFF;
 		}
-		return new Integer(r);
+		return r;
 	}
 
 	public byte[] serialize(Object o, SerializationContext ctx) throws SerializationException {
@@ -1,14 +1,23 @@
 /*
- * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved. 
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
  * See LICENSE doc in a root of project folder for additional information.
  */
 
 package com.nmote.iim4j.serialize;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * Serializer for charsets.
+ * Serializer for charsets. Coded character set values are ISO 2022 escape
+ * sequences, which are mapped to Java character set names through a lookup
+ * table. Values without escape sequences are treated as character set names.
+ * Known character set names are serialized as their escape sequence (UTF-8 as
+ * ESC % G), other values, including escape sequence strings, are written as
+ * they are.
  */
 public class CodedCharsetSerializer implements Serializer {
 
@@ -17,6 +26,13 @@ public class CodedCharsetSerializer implements Serializer {
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
+		if (data.length > 0 && data[0] == ESC) {
+			String cs = decodeEscapes(data);
+			if (cs != null) {
+				return cs;
+			}
+		}
+
 		try {
 			String s = new String(data, "ISO-8859-1");
 			if ("CP-1250".equalsIgnoreCase(s)) {
@@ -31,6 +47,10 @@ public class CodedCharsetSerializer implements Serializer {
 	public byte[] serialize(Object o, SerializationContext ctx) throws SerializationException {
 		try {
 			String s = ((String) o);
+			byte[] escape = encodeEscape(s);
+			if (escape != null) {
+				return escape.clone();
+			}
 			if (s.equalsIgnoreCase("Cp1250")) {
 				s = "CP-1250";
 			}
@@ -40,6 +60,124 @@ public class CodedCharsetSerializer implements Serializer {
 		}
 	}
 
+	/**
+	 * Maps escape sequences to a character set name. Designations of US-ASCII
+	 * are overridden by other designations, and UTF-8 overrides everything.
+	 *
+	 * @return character set name or null if no escape sequence is known
+	 */
+	private static String decodeEscapes(byte[] data) {
+		String result = null;
+		for (int i = 0; i < data.length;) {
+			if (data[i] != ESC || i + 2 >= data.length) {
+				++i;
+				continue;
+			}
+
+			int intermediate = data[i + 1] & 0xFF;
+			int f = i + 2;
+			int row;
+			if (intermediate == '%' && data[f] == '/') {
+				// ESC % / F
+				if (++f >= data.length) {
+					break;
+				}
+				row = ROW_UTF8_LEVEL;
+			} else if (intermediate >= 0x20 && intermediate <= 0x2F) {
+				row = intermediate - 0x20;
+			} else {
+				++i;
+				continue;
+			}
+
+			int ff = data[f] & 0xFF;
+			if (ff >= FINAL_FIRST && ff <= FINAL_LAST) {
+				String cs = TABLE[row * FINALS + ff - FINAL_FIRST];
+				if (UTF_8.equals(cs)) {
+					return cs;
+				}
+				if (cs != null && (result == null || !US_ASCII.equals(cs))) {
+					result = cs;
+				}
+			}
+			i = f + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up escape sequence for a character set name or one of its
+	 * aliases.
+	 *
+	 * @return escape sequence or null if character set has none
+	 */
+	private static byte[] encodeEscape(String name) {
+		byte[] result = ESCAPES.get(name.toUpperCase(Locale.ENGLISH));
+		if (result == null) {
+			try {
+				if (Charset.isSupported(name)) {
+					result = ESCAPES.get(Charset.forName(name).name().toUpperCase(Locale.ENGLISH));
+				}
+			} catch (IllegalArgumentException e) {
+				// Not a character set name, such as an escape sequence
+			}
+		}
+		return result;
+	}
+
+	private static void put(String escape, String cs) {
+		byte[] b;
+		try {
+			b = escape.getBytes("ISO-8859-1");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		int row = b.length == 4 ? ROW_UTF8_LEVEL : b[1] - 0x20;
+		TABLE[row * FINALS + b[b.length - 1] - FINAL_FIRST] = cs;
+		// First escape sequence put for a character set is written
+		if (!ESCAPES.containsKey(cs)) {
+			ESCAPES.put(cs, b);
+		}
+	}
+
+	private static final byte ESC = 0x1B;
+
+	private static final int FINAL_FIRST = 0x30;
+	private static final int FINAL_LAST = 0x7E;
+	private static final int FINALS = FINAL_LAST - FINAL_FIRST + 1;
+
+	/** Table row of ESC % / F, other rows are intermediate byte - 0x20 */
+	private static final int ROW_UTF8_LEVEL = 16;
+
+	/** Character set names indexed by intermediate row and final byte */
+	private static final String[] TABLE = new String[17 * FINALS];
+
+	/** Escape sequences for upper case character set names */
+	private static final Map<String, byte[]> ESCAPES = new HashMap<String, byte[]>();
+
+	private static final String US_ASCII = "US-ASCII";
+	private static final String UTF_8 = "UTF-8";
+
+	static {
+		put("\u001B%G", UTF_8);
+		put("\u001B%/G", UTF_8);
+		put("\u001B%/H", UTF_8);
+		put("\u001B%/I", UTF_8);
+		put("\u001B(B", US_ASCII);
+		put("\u001B-A", "ISO-8859-1");
+		put("\u001B.A", "ISO-8859-1");
+		put("\u001B-B", "ISO-8859-2");
+		put("\u001B.B", "ISO-8859-2");
+		put("\u001B-C", "ISO-8859-3");
+		put("\u001B-D", "ISO-8859-4");
+		put("\u001B-L", "ISO-8859-5");
+		put("\u001B-G", "ISO-8859-6");
+		put("\u001B-F", "ISO-8859-7");
+		put("\u001B-H", "ISO-8859-8");
+		put("\u001B-M", "ISO-8859-9");
+		put("\u001B-b", "ISO-8859-15");
+	}
+
 	@SuppressWarnings("unused")
 	private final int maxLength;
 }
@@ -6,14 +6,42 @@
 package com.nmote.iim4j.serialize;
 
 import java.io.UnsupportedEncodingException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.Temporal;
+import java.time.temporal.TemporalAccessor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Serializer for dates.
+ * Serializer for dates. Values are kept as strings, java.time values can be
+ * converted with {@link #parseDate(byte[], int, int)},
+ * {@link #parseTime(LocalDate, byte[], int, int, ZoneId)} and
+ * {@link #format(TemporalAccessor)}. IIM layouts yyyyMMdd and HHmmssZ are
+ * converted directly from bytes, other patterns use a DateTimeFormatter shared
+ * by all serializers with the same pattern. Unlike SimpleDateFormat, parsing
+ * is strict for all patterns, so invalid dates such as 20150230 aren't
+ * accepted.
  */
 public class DateSerializer implements Serializer {
 
 	public DateSerializer(String format) {
 		this.format = format;
+		if (DATE_LAYOUT.equals(format)) {
+			this.layout = DATE;
+		} else if (TIME_LAYOUT.equals(format)) {
+			this.layout = TIME;
+		} else {
+			this.layout = OTHER;
+		}
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
@@ -32,9 +60,204 @@ public class DateSerializer implements Serializer {
 		}
 	}
 
+	/**
+	 * Returns a strict formatter for this serializer's pattern. Formatters are
+	 * immutable and cached per pattern.
+	 *
+	 * @return formatter
+	 */
+	public DateTimeFormatter getFormatter() {
+		DateTimeFormatter result = formatter;
+		if (result == null) {
+			formatter = result = formatters.computeIfAbsent(format, DateSerializer::createFormatter);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a formatter that rejects invalid dates. Year-of-era (y) is
+	 * mapped to proleptic year (u), as strict resolving of year-of-era
+	 * requires an era field that IIM patterns don't have.
+	 */
+	private static DateTimeFormatter createFormatter(String pattern) {
+		StringBuilder b = new StringBuilder(pattern.length());
+		boolean quoted = false;
+		for (int i = 0; i < pattern.length(); ++i) {
+			char c = pattern.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (c == 'y' && !quoted) {
+				c = 'u';
+			}
+			b.append(c);
+		}
+		return DateTimeFormatter.ofPattern(b.toString()).withResolverStyle(ResolverStyle.STRICT);
+	}
+
+	/**
+	 * Parses a date value.
+	 *
+	 * @param data
+	 *            array holding raw data
+	 * @param offset
+	 *            offset of raw data in array
+	 * @param length
+	 *            length of raw data
+	 * @return local date
+	 * @throws SerializationException
+	 *             if value can't be parsed
+	 */
+	public LocalDate parseDate(byte[] data, int offset, int length) throws SerializationException {
+		try {
+			if (layout == DATE && length == 8) {
+				return LocalDate.of(digits(data, offset, 4), digits(data, offset + 4, 2), digits(data, offset + 6, 2));
+			}
+			return getFormatter().parse(toString(data, offset, length), LocalDate::from);
+		} catch (DateTimeException e) {
+			throw new SerializationException("failed to parse date " + toString(data, offset, length) + ": "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Parses a time value on a given date. Times without an offset are in a
+	 * passed zone.
+	 *
+	 * @param date
+	 *            date of a time value
+	 * @param data
+	 *            array holding raw data
+	 * @param offset
+	 *            offset of raw data in array
+	 * @param length
+	 *            length of raw data
+	 * @param zone
+	 *            zone of times without an offset
+	 * @return date-time with offset
+	 * @throws SerializationException
+	 *             if value can't be parsed
+	 */
+	public OffsetDateTime parseTime(LocalDate date, byte[] data, int offset, int length, ZoneId zone)
+			throws SerializationException {
+		Temporal time = parseTime0(data, offset, length);
+		if (time instanceof OffsetTime) {
+			return ((OffsetTime) time).atDate(date);
+		}
+		return ZonedDateTime.of(date, (LocalTime) time, zone).toOffsetDateTime();
+	}
+
+	/**
+	 * Parses a time value into OffsetTime, or LocalTime if value has no
+	 * offset.
+	 */
+	private Temporal parseTime0(byte[] data, int offset, int length) throws SerializationException {
+		try {
+			if (layout == TIME && (length == 6 || length == 11)) {
+				int hour = digits(data, offset, 2);
+				int minute = digits(data, offset + 2, 2);
+				int second = digits(data, offset + 4, 2);
+				if (length == 6) {
+					return LocalTime.of(hour, minute, second);
+				}
+				int sign = data[offset + 6];
+				if (sign != '+' && sign != '-') {
+					throw new SerializationException("invalid time offset sign: " + toString(data, offset, length));
+				}
+				int h = digits(data, offset + 7, 2);
+				int m = digits(data, offset + 9, 2);
+				ZoneOffset zone = sign == '+' ? ZoneOffset.ofHoursMinutes(h, m) : ZoneOffset.ofHoursMinutes(-h, -m);
+				return OffsetTime.of(hour, minute, second, 0, zone);
+			}
+			return (Temporal) getFormatter().parseBest(toString(data, offset, length), OffsetTime::from,
+					LocalTime::from);
+		} catch (DateTimeException e) {
+			throw new SerializationException("failed to parse time " + toString(data, offset, length) + ": "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Formats a date, time or date-time value using this serializer's pattern.
+	 *
+	 * @param t
+	 *            value to format
+	 * @return raw data
+	 * @throws SerializationException
+	 *             if value lacks fields required by a pattern
+	 */
+	public byte[] format(TemporalAccessor t) throws SerializationException {
+		try {
+			if (layout == DATE) {
+				LocalDate d = LocalDate.from(t);
+				if (d.getYear() >= 0 && d.getYear() <= 9999) {
+					byte[] b = new byte[8];
+					putDigits(b, 0, 4, d.getYear());
+					putDigits(b, 4, 2, d.getMonthValue());
+					putDigits(b, 6, 2, d.getDayOfMonth());
+					return b;
+				}
+			} else if (layout == TIME) {
+				OffsetTime time = OffsetTime.from(t);
+				int offset = time.getOffset().getTotalSeconds() / 60;
+				byte[] b = new byte[11];
+				putDigits(b, 0, 2, time.getHour());
+				putDigits(b, 2, 2, time.getMinute());
+				putDigits(b, 4, 2, time.getSecond());
+				b[6] = (byte) (offset < 0 ? '-' : '+');
+				offset = Math.abs(offset);
+				putDigits(b, 7, 2, offset / 60);
+				putDigits(b, 9, 2, offset % 60);
+				return b;
+			}
+			return getFormatter().format(t).getBytes("ISO-8859-1");
+		} catch (DateTimeException e) {
+			throw new SerializationException("failed to format " + t + " with " + format + ": " + e.getMessage());
+		} catch (UnsupportedEncodingException e) {
+			throw new SerializationException("impossible");
+		}
+	}
+
 	public String toString() {
 		return format;
 	}
 
+	private static int digits(byte[] data, int offset, int length) throws SerializationException {
+		int r = 0;
+		for (int i = offset, end = offset + length; i < end; ++i) {
+			int d = data[i] - '0';
+			if (d < 0 || d > 9) {
+				throw new SerializationException("invalid digit: " + (char) (data[i] & 0xFF));
+			}
+			r = r * 10 + d;
+		}
+		return r;
+	}
+
+	private static void putDigits(byte[] b, int offset, int length, int value) {
+		for (int i = offset + length - 1; i >= offset; --i) {
+			b[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private static String toString(byte[] data, int offset, int length) {
+		try {
+			return new String(data, offset, length, "ISO-8859-1");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static final String DATE_LAYOUT = "yyyyMMdd";
+	private static final String TIME_LAYOUT = "HHmmssZ";
+
+	private static final int OTHER = 0;
+	private static final int DATE = 1;
+	private static final int TIME = 2;
+
+	private static final ConcurrentMap<String, DateTimeFormatter> formatters = new ConcurrentHashMap<String, DateTimeFormatter>();
+
 	private final String format;
-}
\ No newline at end of file
+	private volatile DateTimeFormatter formatter;
+	private final int layout;
+}
@@ -3,6 +3,9 @@
  */
 package com.nmote.iim4j.serialize;
 
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 
 /**
  * DefaultSerializationContext
@@ -21,13 +24,39 @@ public class DefaultSerializationContext implements SerializationContext {
 		return characterSet;
 	}
 
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Sets and resolves a character set. If character set isn't supported
+	 * getCharset() will return null and strings can't be (de)serialized.
+	 *
+	 * @param cs
+	 *            character set name or null for ISO-8859-1
+	 */
 	public void setCharacterSet(String cs) {
 		if (cs != null) {
 			characterSetAssigned = true;
 			characterSet = cs;
+			charset = resolve(cs);
 		} else {
 			characterSetAssigned = false;
 			characterSet =  "ISO-8859-1";
+			charset = ISO_8859_1;
+		}
+	}
+
+	private static Charset resolve(String cs) {
+		if (cs.equalsIgnoreCase(ISO_8859_1.name())) {
+			return ISO_8859_1;
+		}
+		try {
+			return Charset.forName(cs);
+		} catch (IllegalCharsetNameException e) {
+			return null;
+		} catch (UnsupportedCharsetException e) {
+			return null;
 		}
 	}
 
@@ -36,6 +65,9 @@ public class DefaultSerializationContext implements SerializationContext {
 		return this.characterSetAssigned;
 	}
 
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	private Charset charset;
 	private String characterSet;
 	private boolean characterSetAssigned;
 }
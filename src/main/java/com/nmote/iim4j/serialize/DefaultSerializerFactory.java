@@ -5,35 +5,89 @@
 
 package com.nmote.iim4j.serialize;
 
-import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * DefaultSerializerFactory is default implementation of SerializerFactory. It
  * is used by IIMDataSetInfoFactory to create {@link Serializer} instances.
+ * Serializer types are looked up in a static registry, and serializers are
+ * immutable, so a single instance is shared for each distinct specification.
  */
 public class DefaultSerializerFactory implements SerializerFactory {
 
+	/**
+	 * Creates or returns a shared Serializer instance.
+	 *
+	 * @param spec
+	 *            Serializer specification, type optionally followed by a
+	 *            definition in parentheses, for example String(64)
+	 * @return Serializer instance, or null if type is unknown or definition
+	 *         is invalid. Data sets without a serializer hold binary values.
+	 */
 	public Serializer create(String spec) {
-		String type, def;
-		int lparen = spec.indexOf('(');
-		if (lparen != -1) {
-			type = spec.substring(0, lparen);
-			def = spec.substring(lparen + 1, spec.length() - 1);
-		} else {
-			type = spec;
-			def = null;
-		}
+		Serializer result = serializers.get(spec);
+		if (result == null) {
+			String type, def;
+			int lparen = spec.indexOf('(');
+			if (lparen != -1) {
+				type = spec.substring(0, lparen);
+				def = spec.substring(lparen + 1, spec.length() - 1);
+			} else {
+				type = spec;
+				def = null;
+			}
 
-		Serializer result;
-		try {
-			// Instantiate serializer
-			Class<?> c = Class.forName("com.nmote.iim4j.serialize." + type + "Serializer");
-			Constructor<?> constructor = c.getConstructor(new Class[] { String.class });
-			result = (Serializer) constructor.newInstance(new Object[] { def });
-		} catch (Exception e) {
-			e.printStackTrace();
-			result = null;
+			Function<String, Serializer> constructor = TYPES.get(type);
+			if (constructor == null) {
+				return null;
+			}
+			try {
+				result = constructor.apply(def);
+			} catch (RuntimeException e) {
+				// Invalid definition, such as String(abc)
+				return null;
+			}
+			Serializer previous = serializers.putIfAbsent(spec, result);
+			if (previous != null) {
+				result = previous;
+			}
 		}
 		return result;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * All DefaultSerializerFactory instances share same serializers, so they
+	 * are equal. Subclasses could be configured differently, their instances
+	 * are equal only to themselves.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this || obj != null && obj.getClass() == DefaultSerializerFactory.class
+				&& getClass() == DefaultSerializerFactory.class;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass() == DefaultSerializerFactory.class ? DefaultSerializerFactory.class.hashCode() : System
+				.identityHashCode(this);
+	}
+
+	private static final Map<String, Function<String, Serializer>> TYPES = new HashMap<String, Function<String, Serializer>>();
+
+	/** Shared serializer instances by specification */
+	private static final ConcurrentMap<String, Serializer> serializers = new ConcurrentHashMap<String, Serializer>();
+
+	static {
+		TYPES.put("Binary", BinarySerializer::new);
+		TYPES.put("BinaryNumber", BinaryNumberSerializer::new);
+		TYPES.put("CodedCharset", CodedCharsetSerializer::new);
+		TYPES.put("Date", DateSerializer::new);
+		TYPES.put("Number", NumberSerializer::new);
+		TYPES.put("String", StringSerializer::new);
+		TYPES.put("VarBinaryNumber", VarBinaryNumberSerializer::new);
+	}
+}
@@ -10,18 +10,52 @@ import java.io.UnsupportedEncodingException;
 /**
  * Serializer for string encoded integers.
  */
-public class NumberSerializer implements Serializer {
+public class NumberSerializer implements NumericSerializer {
 
 	public NumberSerializer(String def) {
 		length = def != null ? Integer.parseInt(def) : Integer.MAX_VALUE;
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
-		try {
-			return new Integer(new String(data, "ISO-8859-1"));
-		} catch (UnsupportedEncodingException e) {
-			throw new SerializationException("impossible");
+		return Integer.valueOf(deserializeInt(data, 0, data.length));
+	}
+
+	public int deserializeInt(byte[] data, int offset, int length) throws SerializationException {
+		long r = deserializeLong(data, offset, length);
+		if (r < Integer.MIN_VALUE || r > Integer.MAX_VALUE) {
+			throw new SerializationException("number too large for int: " + r);
+		}
+		return (int) r;
+	}
+
+	public long deserializeLong(byte[] data, int offset, int length) throws SerializationException {
+		int end = offset + length;
+		boolean negative = length > 0 && data[offset] == '-';
+		// Leading sign, as accepted by Integer.parseInt()
+		int i = length > 0 && (negative || data[offset] == '+') ? offset + 1 : offset;
+		if (i == end) {
+			throw new SerializationException("not a number");
+		}
+
+		// Accumulate negative value, so Long.MIN_VALUE can be parsed
+		long r = 0;
+		for (; i < end; ++i) {
+			int d = data[i] - '0';
+			if (d < 0 || d > 9) {
+				throw new SerializationException("invalid digit: " + (char) (data[i] & 0xFF));
+			}
+			if (r < (Long.MIN_VALUE + d) / 10) {
+				throw new SerializationException("number too large");
+			}
+			r = r * 10 - d;
+		}
+		if (!negative) {
+			if (r == Long.MIN_VALUE) {
+				throw new SerializationException("number too large");
+			}
+			r = -r;
 		}
+		return r;
 	}
 
 	public byte[] serialize(Object o, SerializationContext ctx) throws SerializationException {
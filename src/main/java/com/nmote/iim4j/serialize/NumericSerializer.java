@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+/**
+ * NumericSerializer is a Serializer for numbers that can also deserialize raw
+ * data directly to primitive values, without boxing.
+ */
+public interface NumericSerializer extends Serializer {
+
+	/**
+	 * Deserializes data to int value.
+	 *
+	 * @param data
+	 *            array holding raw data
+	 * @param offset
+	 *            offset of raw data in array
+	 * @param length
+	 *            length of raw data
+	 * @return int value
+	 * @throws SerializationException
+	 *             if raw data can't be deserialized or value doesn't fit
+	 *             in int
+	 */
+	int deserializeInt(byte[] data, int offset, int length) throws SerializationException;
+
+	/**
+	 * Deserializes data to long value.
+	 *
+	 * @param data
+	 *            array holding raw data
+	 * @param offset
+	 *            offset of raw data in array
+	 * @param length
+	 *            length of raw data
+	 * @return long value
+	 * @throws SerializationException
+	 *             if raw data can't be deserialized
+	 */
+	long deserializeLong(byte[] data, int offset, int length) throws SerializationException;
+}
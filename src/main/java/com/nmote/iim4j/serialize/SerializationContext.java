@@ -5,6 +5,9 @@
 
 package com.nmote.iim4j.serialize;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 /**
  * SerializationContext is used to pass additional parameters to serializer
  * while (de)serializing.
@@ -12,4 +15,24 @@ package com.nmote.iim4j.serialize;
 public interface SerializationContext {
 
 	String getCharacterSet();
+
+	/**
+	 * Returns a resolved character set. Implementations should cache it, as
+	 * this default implementation looks it up on each call.
+	 *
+	 * @return charset for getCharacterSet(), ISO-8859-1 if character set is
+	 *         null, or null if it is not supported
+	 */
+	default Charset getCharset() {
+		String cs = getCharacterSet();
+		if (cs == null) {
+			return StandardCharsets.ISO_8859_1;
+		}
+		try {
+			return Charset.forName(cs);
+		} catch (IllegalArgumentException e) {
+			// Illegal or unsupported character set name
+			return null;
+		}
+	}
 }
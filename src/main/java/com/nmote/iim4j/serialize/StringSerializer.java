@@ -5,10 +5,11 @@
 
 package com.nmote.iim4j.serialize;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 
 /**
- * Serializer for strings.
+ * Serializer for strings. Values are converted with a character set resolved
+ * once by serialization context.
  */
 public class StringSerializer implements Serializer {
 
@@ -17,19 +18,19 @@ public class StringSerializer implements Serializer {
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
-		try {
-			return new String(data, ctx.getCharacterSet());
-		} catch (UnsupportedEncodingException e) {
-			throw new SerializationException("unsupported character set: " + ctx.getCharacterSet());
-		}
+		return new String(data, charset(ctx));
 	}
 
 	public byte[] serialize(Object o, SerializationContext ctx) throws SerializationException {
-		try {
-			return ((String) o).getBytes(ctx.getCharacterSet());
-		} catch (UnsupportedEncodingException e) {
+		return ((String) o).getBytes(charset(ctx));
+	}
+
+	private static Charset charset(SerializationContext ctx) throws SerializationException {
+		Charset cs = ctx.getCharset();
+		if (cs == null) {
 			throw new SerializationException("unsupported character set: " + ctx.getCharacterSet());
 		}
+		return cs;
 	}
 
 	@SuppressWarnings("unused")
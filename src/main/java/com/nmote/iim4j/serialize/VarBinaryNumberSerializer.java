@@ -8,20 +8,32 @@ package com.nmote.iim4j.serialize;
 /**
  * Serializer for variable length encoded binary numbers.
  */
-public class VarBinaryNumberSerializer implements Serializer {
+public class VarBinaryNumberSerializer implements NumericSerializer {
 
 	public VarBinaryNumberSerializer(String def) {
 	}
 
 	public Object deserialize(byte[] data, SerializationContext ctx) throws SerializationException {
-		if (data.length > 8) {
-			throw new SerializationException("data too long: " + data.length);
+		return Long.valueOf(deserializeLong(data, 0, data.length));
+	}
+
+	public int deserializeInt(byte[] data, int offset, int length) throws SerializationException {
+		long r = deserializeLong(data, offset, length);
+		if (r < 0 || r > Integer.MAX_VALUE) {
+			throw new SerializationException("number too large for int: " + r);
+		}
+		return (int) r;
+	}
+
+	public long deserializeLong(byte[] data, int offset, int length) throws SerializationException {
+		if (length > 8) {
+			throw new SerializationException("data too long: " + length);
 		}
 		long r = 0;
-		for (int i = 0; i < data.length; i++) {
+		for (int i = offset, end = offset + length; i < end; i++) {
 			r = (r << 8) | data[i] & 0xFF;
 		}
-		return new Long(r);
+		return r;
 	}
 
 	public byte[] serialize(Object o, SerializationContext ctx) throws SerializationException {
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * BufferedFileIIMInputStream is an implementation of IIMInputStream backed up
+ * by FileChannel with an internal read-ahead buffer. Seeking only moves a
+ * logical cursor, file is accessed only when cursor leaves buffered window.
+ */
+public class BufferedFileIIMInputStream implements TransferableIIMInputStream {
+
+	/** Default size of read-ahead buffer in bytes */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	public BufferedFileIIMInputStream(FileChannel channel, int bufferSize) {
+		if (channel == null) {
+			throw new NullPointerException("channel == null");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize <= 0");
+		}
+		this.channel = channel;
+		this.buffer = new byte[bufferSize];
+		this.byteBuffer = ByteBuffer.wrap(buffer);
+	}
+
+	public BufferedFileIIMInputStream(FileChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedFileIIMInputStream(RandomAccessFile file) {
+		this(file.getChannel());
+	}
+
+	public BufferedFileIIMInputStream(File file) throws IOException {
+		this(new RandomAccessFile(file, "r"));
+	}
+
+	public boolean isCached() {
+		return true;
+	}
+
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("negative seek position: " + position);
+		}
+		this.position = position;
+	}
+
+	public long position() throws IOException {
+		return position;
+	}
+
+	public int read() throws IOException {
+		if (!isBuffered(position) && !fill(position)) {
+			return -1;
+		}
+		return buffer[(int) (position++ - bufferStart)] & 0xFF;
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		int copied = 0;
+		if (isBuffered(position)) {
+			// Serve as much as possible from a buffered window
+			int off = (int) (position - bufferStart);
+			copied = Math.min(bufferLength - off, length);
+			System.arraycopy(buffer, off, b, offset, copied);
+			position += copied;
+			offset += copied;
+			length -= copied;
+		}
+
+		if (length >= buffer.length) {
+			// Large reads go directly to file, bypassing buffer
+			int r = channel.read(ByteBuffer.wrap(b, offset, length), position);
+			if (r > 0) {
+				position += r;
+				copied += r;
+			}
+		} else if (length > 0 && fill(position)) {
+			int r = Math.min(bufferLength, length);
+			System.arraycopy(buffer, 0, b, offset, r);
+			position += r;
+			copied += r;
+		}
+
+		return copied > 0 ? copied : -1;
+	}
+
+	/**
+	 * Copies from buffered window if it holds the whole range, otherwise
+	 * reads from file channel. Safe to call from many threads, also while
+	 * stream is read sequentially.
+	 */
+	public int read(long position, byte[] b, int offset, int length) throws IOException {
+		synchronized (byteBuffer) {
+			if (position >= bufferStart && position + length <= bufferStart + bufferLength) {
+				System.arraycopy(buffer, (int) (position - bufferStart), b, offset, length);
+				return length;
+			}
+		}
+		return channel.read(ByteBuffer.wrap(b, offset, length), position);
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(position, count, target);
+	}
+
+	public void close() throws IOException {
+		synchronized (byteBuffer) {
+			bufferLength = 0;
+		}
+		channel.close();
+	}
+
+	private boolean isBuffered(long pos) {
+		return pos >= bufferStart && pos < bufferStart + bufferLength;
+	}
+
+	/**
+	 * Fills read-ahead buffer with file content starting at a given position.
+	 *
+	 * @param pos
+	 *            file position
+	 * @return false if position is at or past end of file
+	 * @throws IOException
+	 *             if file can't be read
+	 */
+	private boolean fill(long pos) throws IOException {
+		// Positional reads copy from the window under the same lock
+		synchronized (byteBuffer) {
+			byteBuffer.clear();
+			bufferStart = pos;
+			bufferLength = 0;
+			while (byteBuffer.hasRemaining()) {
+				int r = channel.read(byteBuffer, pos + byteBuffer.position());
+				if (r < 0) {
+					break;
+				}
+			}
+			bufferLength = byteBuffer.position();
+			return bufferLength > 0;
+		}
+	}
+
+	private final byte[] buffer;
+	private int bufferLength;
+	private long bufferStart;
+	private final ByteBuffer byteBuffer;
+	private final FileChannel channel;
+	private long position;
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ByteBufferIIMInputStream is an implementation of IIMInputStream backed up by
+ * an in-memory heap or direct ByteBuffer. Stream positions are relative to a
+ * buffer position at a time of construction. Buffer content isn't copied, and
+ * data set values can be obtained as slices of a buffer.
+ */
+public class ByteBufferIIMInputStream implements TransferableIIMInputStream {
+
+	public ByteBufferIIMInputStream(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new NullPointerException("buffer == null");
+		}
+		this.buffer = buffer.duplicate();
+		this.base = buffer.position();
+		this.limit = buffer.limit();
+	}
+
+	public ByteBufferIIMInputStream(byte[] buffer, int offset, int length) {
+		this(ByteBuffer.wrap(buffer, offset, length));
+	}
+
+	public ByteBufferIIMInputStream(byte[] buffer) {
+		this(ByteBuffer.wrap(buffer));
+	}
+
+	public boolean isCached() {
+		return true;
+	}
+
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("negative seek position: " + position);
+		}
+		this.position = position;
+	}
+
+	public long position() throws IOException {
+		return position;
+	}
+
+	/**
+	 * Returns number of bytes available in a whole stream.
+	 *
+	 * @return stream length in bytes
+	 */
+	public long length() {
+		return limit - base;
+	}
+
+	public int read() throws IOException {
+		if (position >= length()) {
+			return -1;
+		}
+		return buffer.get((int) (base + position++)) & 0xFF;
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		long available = length() - position;
+		if (available <= 0) {
+			return -1;
+		}
+		int r = (int) Math.min(available, length);
+		buffer.position((int) (base + position));
+		buffer.get(b, offset, r);
+		position += r;
+		return r;
+	}
+
+	public int read(long position, byte[] b, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		long available = length() - position;
+		if (available <= 0) {
+			return -1;
+		}
+		int r = (int) Math.min(available, length);
+		ByteBuffer d = buffer.duplicate();
+		d.position((int) (base + position));
+		d.get(b, offset, r);
+		return r;
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		long available = length() - position;
+		if (available <= 0) {
+			return 0;
+		}
+		return target.write(slice(position, (int) Math.min(available, count)));
+	}
+
+	/**
+	 * Returns a part of underlying buffer without copying its content.
+	 * Returned buffer shares content with a buffer passed to this stream.
+	 *
+	 * @param position
+	 *            stream position of a first byte
+	 * @param length
+	 *            number of bytes in a slice
+	 * @return buffer slice
+	 * @throws EOFException
+	 *             if slice would extend past end of stream
+	 */
+	public ByteBuffer slice(long position, int length) throws EOFException {
+		if (position < 0 || length < 0 || position + length > length()) {
+			throw new EOFException("slice past end of stream (pos=" + position + ", length=" + length + ")");
+		}
+		ByteBuffer result = buffer.duplicate();
+		int start = (int) (base + position);
+		result.limit(start + length);
+		result.position(start);
+		return result.slice();
+	}
+
+	public void close() throws IOException {
+	}
+
+	private final int base;
+	private final ByteBuffer buffer;
+	private final int limit;
+	private long position;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ChannelIIMOutputStream is an IIMOutputStream writing to a
+ * WritableByteChannel. Data sets read from a
+ * {@link TransferableIIMInputStream} are copied to a channel without passing
+ * through Java heap.
+ */
+public class ChannelIIMOutputStream implements IIMOutputStream {
+
+	public ChannelIIMOutputStream(WritableByteChannel channel) {
+		if (channel == null) {
+			throw new NullPointerException("channel == null");
+		}
+		this.channel = channel;
+	}
+
+	public ChannelIIMOutputStream(File f) throws FileNotFoundException {
+		this(new FileOutputStream(f).getChannel());
+	}
+
+	/**
+	 * Returns channel this stream writes to.
+	 *
+	 * @return underlying channel
+	 */
+	public WritableByteChannel getChannel() {
+		return channel;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		write(ByteBuffer.wrap(b, off, len));
+	}
+
+	public void write(int b) throws IOException {
+		single[0] = (byte) b;
+		write(single, 0, 1);
+	}
+
+	/**
+	 * Writes all remaining bytes from a buffer.
+	 *
+	 * @param src
+	 *            buffer to write
+	 * @throws IOException
+	 *             if channel can't be written to
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		while (src.hasRemaining()) {
+			channel.write(src);
+		}
+	}
+
+	private final WritableByteChannel channel;
+	private final byte[] single = new byte[1];
+}
@@ -8,12 +8,14 @@ package com.nmote.iim4j.stream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * FileIIMInputStream is an implementation of IIMInputStream backed up by
  * RandomAccessFile.
  */
-public class FileIIMInputStream implements IIMInputStream {
+public class FileIIMInputStream implements TransferableIIMInputStream {
 
 	public FileIIMInputStream(RandomAccessFile file) throws IOException {
 		if (file == null) {
@@ -46,6 +48,14 @@ public class FileIIMInputStream implements IIMInputStream {
 		return file.read(buffer, offset, length);
 	}
 
+	public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+		return file.getChannel().read(ByteBuffer.wrap(buffer, offset, length), position);
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return file.getChannel().transferTo(position, count, target);
+	}
+
 	public void close() throws IOException {
 		file.close();
 	}
@@ -10,7 +10,8 @@ import java.io.IOException;
 
 /**
  * This is an IIMInputStream implementation that parses IPTC data embedded into
- * JFIF (JPEG) files.
+ * JFIF (JPEG) files. Input stream doesn't have to be cached, segments before
+ * APPD are skipped using seek forward.
  */
 public class JPEGIIMInputStream extends SubIIMInputStream {
 
@@ -43,10 +44,8 @@ public class JPEGIIMInputStream extends SubIIMInputStream {
 			segmentSize -= 2;
 
 			if (segmentMarker == JPEGUtil.APPD) {
-				if (input.isCached()) {
-					// Substract skipped 8BIM headers from segment size
-					segmentSize -= findStartTag(input);
-				}
+				// Substract skipped 8BIM headers from segment size
+				segmentSize -= findStartTag(input);
 				setOffsetAndLength(input.position(), segmentSize);
 				break;
 			} else {
@@ -58,16 +57,11 @@ public class JPEGIIMInputStream extends SubIIMInputStream {
 
 	private static int findStartTag(IIMInputStream input) throws IOException {
 		long start = input.position();
-		int tag = input.read();
-		while (tag != 28) {
-			if (tag == -1) {
-				// We've reached EOF, no more datasets to return
-				throw new EOFException("Can't find 0x1C marker in APPD segment");
-			}
-			tag = input.read();
+		long pos = TagScanner.find(input);
+		if (pos == -1) {
+			// We've reached EOF, no more datasets to return
+			throw new EOFException("Can't find 0x1C marker in APPD segment");
 		}
-		long pos = input.position() - 1;
-		input.seek(pos);
 		return (int) (pos - start);
 	}
 
@@ -5,16 +5,12 @@
 
 package com.nmote.iim4j.stream;
 
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
 
 import com.nmote.iim4j.IIMFile;
-import com.nmote.iim4j.IIMWriter;
-import com.nmote.iim4j.dataset.DataSet;
 
 /**
  * JPEGUtil contains constants and utility functions used for processing of JPEG
@@ -34,23 +30,8 @@ public class JPEGUtil {
 	private static final String PHOTOSHOP30_HEADER = "Photoshop 3.0\u00008BIM\u0004\u0004\u0000\u0000\u0000\u0000";
 
 	public static void insertIIMIntoJPEG(OutputStream out, IIMFile file, InputStream jpegIn) throws IOException {
-		IIMFile clone = (IIMFile) file.clone();
-
-		// Filter out all records except 2
-		for (Iterator<DataSet> i = clone.getDataSets().iterator(); i.hasNext();) {
-			DataSet ds = (DataSet) i.next();
-			if ((ds.getInfo().getDataSetNumber() >> 8) != 2) {
-				i.remove();
-			}
-		}
-
-		// Write IIM to byte array
-		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(buffer));
-		clone.writeTo(writer);
-		writer.close();
-
-		insertIIMIntoJPEG(out, buffer.toByteArray(), jpegIn);
+		// Encode only record 2 data sets
+		insertIIMIntoJPEG(out, file.toByteArray(2), jpegIn);
 	}
 
 	public static void insertIIMIntoJPEG(OutputStream out, byte[] iim, InputStream jpegIn) throws IOException {
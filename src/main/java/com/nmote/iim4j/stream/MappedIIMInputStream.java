@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * MappedIIMInputStream is an implementation of IIMInputStream backed up by
+ * memory mapped file regions. File is split into windows (at most 2GB) aligned
+ * to window size, each window is mapped once when first read and kept until
+ * stream is closed, so reads at different positions don't remap.
+ */
+public class MappedIIMInputStream implements TransferableIIMInputStream {
+
+	/** Default size of a mapped window in bytes */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+	public MappedIIMInputStream(FileChannel channel, int windowSize) throws IOException {
+		if (channel == null) {
+			throw new NullPointerException("channel == null");
+		}
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("windowSize <= 0");
+		}
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.size = channel.size();
+		long count = (size + windowSize - 1) / windowSize;
+		if (count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("windowSize too small for file size " + size);
+		}
+		this.windows = new AtomicReferenceArray<MappedByteBuffer>((int) count);
+	}
+
+	public MappedIIMInputStream(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_WINDOW_SIZE);
+	}
+
+	public MappedIIMInputStream(RandomAccessFile file) throws IOException {
+		this(file.getChannel());
+	}
+
+	public MappedIIMInputStream(File file) throws IOException {
+		this(new RandomAccessFile(file, "r"));
+	}
+
+	public boolean isCached() {
+		return true;
+	}
+
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("negative seek position: " + position);
+		}
+		this.position = position;
+	}
+
+	public long position() throws IOException {
+		return position;
+	}
+
+	/**
+	 * Returns total length of a mapped file.
+	 *
+	 * @return file length in bytes
+	 */
+	public long length() {
+		return size;
+	}
+
+	public int read() throws IOException {
+		MappedByteBuffer w = map(position);
+		if (w == null) {
+			return -1;
+		}
+		return w.get((int) (position++ % windowSize)) & 0xFF;
+	}
+
+	public int read(byte[] buffer) throws IOException {
+		return read(buffer, 0, buffer.length);
+	}
+
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		int copied = read(position, buffer, offset, length);
+		if (copied > 0) {
+			position += copied;
+		}
+		return copied;
+	}
+
+	/**
+	 * Reads from mapped windows without changing a current position. Reads
+	 * crossing a window edge are split. Windows are read through duplicates,
+	 * so concurrent positional reads are safe.
+	 */
+	public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		int copied = 0;
+		for (MappedByteBuffer w; copied < length && (w = map(position + copied)) != null;) {
+			ByteBuffer d = w.duplicate();
+			int off = (int) ((position + copied) % windowSize);
+			int r = Math.min(d.limit() - off, length - copied);
+			d.position(off);
+			d.get(buffer, offset + copied, r);
+			copied += r;
+		}
+
+		return copied > 0 ? copied : -1;
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(position, count, target);
+	}
+
+	public void close() throws IOException {
+		for (int i = 0; i < windows.length(); ++i) {
+			windows.set(i, null);
+		}
+		channel.close();
+	}
+
+	/**
+	 * Returns a window containing passed position, mapping it on first use.
+	 *
+	 * @param pos
+	 *            file position
+	 * @return window containing position, or null if position is at or past
+	 *         end of file
+	 * @throws IOException
+	 *             if file can't be mapped
+	 */
+	private MappedByteBuffer map(long pos) throws IOException {
+		if (pos >= size) {
+			return null;
+		}
+		int index = (int) (pos / windowSize);
+		MappedByteBuffer w = windows.get(index);
+		if (w == null) {
+			long start = (long) index * windowSize;
+			w = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+			// Keep a window mapped by a concurrent reader
+			if (!windows.compareAndSet(index, null, w)) {
+				MappedByteBuffer other = windows.get(index);
+				if (other != null) {
+					w = other;
+				}
+			}
+		}
+		return w;
+	}
+
+	private final FileChannel channel;
+	private long position;
+	private final long size;
+	private final AtomicReferenceArray<MappedByteBuffer> windows;
+	private final int windowSize;
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.IOException;
+
+/**
+ * PositionalIIMInputStream is an IIMInputStream that can read from an absolute
+ * position without moving a current position. Positional reads can be safely
+ * invoked from multiple threads without locking a stream. They are supported
+ * only if stream is cached.
+ */
+public interface PositionalIIMInputStream extends IIMInputStream {
+
+	/**
+	 * Reads up to length bytes starting at a given stream position. Current
+	 * stream position isn't changed.
+	 *
+	 * @param position
+	 *            stream position of a first byte to read
+	 * @param buffer
+	 *            buffer to read into
+	 * @param offset
+	 *            offset in a buffer
+	 * @param length
+	 *            max number of bytes to read
+	 * @return number of bytes read, or -1 if position is at end of stream
+	 * @throws IOException
+	 *             if stream can't be read
+	 */
+	int read(long position, byte[] buffer, int offset, int length) throws IOException;
+}
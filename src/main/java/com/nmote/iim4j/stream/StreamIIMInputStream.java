@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * StreamIIMInputStream is a forward-only IIMInputStream backed up by
+ * java.io.InputStream, like a socket or HTTP request body. It keeps a bounded
+ * look-ahead buffer of recently read bytes, so it can seek back within that
+ * window. Short forward seeks read through look-ahead buffer, so skipped bytes
+ * can be revisited; longer ones skip bytes of underlying stream. Memory used
+ * is constant regardless of a stream length.
+ */
+public class StreamIIMInputStream implements IIMInputStream {
+
+	/** Default size of look-ahead buffer in bytes */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	public StreamIIMInputStream(InputStream in, int bufferSize) {
+		if (in == null) {
+			throw new NullPointerException("in == null");
+		}
+		if (bufferSize < 16) {
+			throw new IllegalArgumentException("bufferSize < 16");
+		}
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+	}
+
+	public StreamIIMInputStream(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Returns false, stream can only be rewound within a look-ahead buffer.
+	 */
+	public boolean isCached() {
+		return false;
+	}
+
+	/**
+	 * Checks if stream can be positioned to a given position.
+	 *
+	 * @param position
+	 *            stream position
+	 * @return true if position is within or after a look-ahead buffer
+	 */
+	public boolean canSeek(long position) {
+		return position >= bufferStart;
+	}
+
+	/**
+	 * Moves stream to a given position. Positions after look-ahead buffer are
+	 * reached by skipping underlying stream.
+	 *
+	 * @throws IOException
+	 *             if position is before look-ahead buffer
+	 */
+	public void seek(long position) throws IOException {
+		if (!canSeek(position)) {
+			throw new IOException("can't seek before look-ahead buffer (pos=" + position + ", buffer=" + bufferStart
+					+ ")");
+		}
+		long end = bufferStart + bufferLength;
+		if (position > end && position - end <= buffer.length / 2) {
+			// Read through buffer, keeping skipped bytes
+			while (bufferStart + bufferLength < position && fill()) {
+			}
+			end = bufferStart + bufferLength;
+		}
+		if (position > end) {
+			// Discard buffer and skip underlying stream
+			long skipped = skip(position - end);
+			bufferStart = end + skipped;
+			bufferLength = 0;
+		}
+		this.position = position;
+	}
+
+	public long position() throws IOException {
+		return position;
+	}
+
+	public int read() throws IOException {
+		if (position >= bufferStart + bufferLength && !fill()) {
+			return -1;
+		}
+		return buffer[(int) (position++ - bufferStart)] & 0xFF;
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		long end = bufferStart + bufferLength;
+		if (position > end) {
+			// Stream was skipped past EOF
+			return -1;
+		}
+
+		int copied = 0;
+		if (position < end) {
+			// Serve from look-ahead buffer
+			int off = (int) (position - bufferStart);
+			copied = Math.min(bufferLength - off, length);
+			System.arraycopy(buffer, off, b, offset, copied);
+			position += copied;
+			offset += copied;
+			length -= copied;
+		}
+
+		if (length >= buffer.length) {
+			// Large reads go directly to underlying stream, keeping a tail of
+			// read data in look-ahead buffer
+			int r = in.read(b, offset, length);
+			if (r > 0) {
+				int keep = Math.min(r, buffer.length);
+				System.arraycopy(b, offset + r - keep, buffer, 0, keep);
+				bufferStart = position + r - keep;
+				bufferLength = keep;
+				position += r;
+				copied += r;
+			}
+		} else if (length > 0 && fill()) {
+			int off = (int) (position - bufferStart);
+			int r = Math.min(bufferLength - off, length);
+			System.arraycopy(buffer, off, b, offset, r);
+			position += r;
+			copied += r;
+		}
+
+		return copied > 0 ? copied : -1;
+	}
+
+	public void close() throws IOException {
+		bufferLength = 0;
+		in.close();
+	}
+
+	/**
+	 * Appends more data from underlying stream to look-ahead buffer. If buffer
+	 * is full, older half of it is discarded.
+	 *
+	 * @return false if underlying stream reached EOF
+	 * @throws IOException
+	 *             if underlying stream can't be read
+	 */
+	private boolean fill() throws IOException {
+		if (bufferLength == buffer.length) {
+			int keep = buffer.length / 2;
+			System.arraycopy(buffer, bufferLength - keep, buffer, 0, keep);
+			bufferStart += bufferLength - keep;
+			bufferLength = keep;
+		}
+		int r = in.read(buffer, bufferLength, buffer.length - bufferLength);
+		if (r <= 0) {
+			return false;
+		}
+		bufferLength += r;
+		return true;
+	}
+
+	private long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			long s = in.skip(n - skipped);
+			if (s <= 0) {
+				// Some streams skip 0 bytes before EOF, check with read
+				if (in.read() < 0) {
+					break;
+				}
+				s = 1;
+			}
+			skipped += s;
+		}
+		return skipped;
+	}
+
+	private final byte[] buffer;
+	private int bufferLength;
+	private long bufferStart;
+	private final InputStream in;
+	private long position;
+}
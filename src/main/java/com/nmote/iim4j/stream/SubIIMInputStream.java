@@ -7,12 +7,17 @@ package com.nmote.iim4j.stream;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * SubIIMInputStream is an IIMInputStream that is subset of another
- * IIMInputStream from a given offset with a given length.
+ * IIMInputStream from a given offset with a given length. If underlying stream
+ * isn't cached, SubIIMInputStream can only be read forward. Unless underlying
+ * stream is a PositionalIIMInputStream, sequential and positional reads lock
+ * it, so they can't move each other's cursor.
  */
-public class SubIIMInputStream implements IIMInputStream {
+public class SubIIMInputStream implements TransferableIIMInputStream {
 
 	/**
 	 * Constructs a SubIIMInputStream from a given stream, offset and length.
@@ -42,11 +47,10 @@ public class SubIIMInputStream implements IIMInputStream {
 	 *             if underlying stream can't be read
 	 */
 	protected SubIIMInputStream(IIMInputStream subStream) throws IOException {
-		if (!subStream.isCached()) {
-			throw new IOException("SubIIMInputStream can only be constructed from cached IIMINputStreams");
+		if (subStream == null) {
+			throw new NullPointerException("subStream == null");
 		}
 		this.subStream = subStream;
-
 	}
 
 	/**
@@ -72,7 +76,7 @@ public class SubIIMInputStream implements IIMInputStream {
 	}
 
 	public boolean isCached() {
-		return true;
+		return subStream.isCached();
 	}
 
 	public void seek(long position) throws IOException {
@@ -91,13 +95,15 @@ public class SubIIMInputStream implements IIMInputStream {
 	}
 
 	public int read() throws IOException {
-		subStream.seek(position + offset);
 		int r;
 		if (position >= length) {
 			r = -1;
 		} else {
+			synchronized (subStream) {
+				seekSubStream();
+				r = subStream.read();
+			}
 			++position;
-			r = subStream.read();
 		}
 		return r;
 	}
@@ -107,21 +113,77 @@ public class SubIIMInputStream implements IIMInputStream {
 	}
 
 	public int read(byte[] buffer, int boffset, int blength) throws IOException {
-		subStream.seek(position + offset);
 		if (position + blength > length) {
 			blength = (int) (length - position);
+			if (blength <= 0) {
+				return -1;
+			}
+		}
+		int r;
+		synchronized (subStream) {
+			seekSubStream();
+			r = subStream.read(buffer, boffset, blength);
 		}
-		int r = subStream.read(buffer, boffset, blength);
 		if (r > 0) {
 			position += r;
 		}
 		return r;
 	}
 
+	public int read(long position, byte[] buffer, int boffset, int blength) throws IOException {
+		if (position + blength > length) {
+			blength = (int) (length - position);
+			if (blength <= 0) {
+				return -1;
+			}
+		}
+		int r;
+		if (subStream instanceof PositionalIIMInputStream) {
+			r = ((PositionalIIMInputStream) subStream).read(position + offset, buffer, boffset, blength);
+		} else {
+			synchronized (subStream) {
+				subStream.seek(position + offset);
+				r = subStream.read(buffer, boffset, blength);
+			}
+		}
+		return r;
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (position + count > length) {
+			count = length - position;
+			if (count <= 0) {
+				return 0;
+			}
+		}
+		long r;
+		if (subStream instanceof TransferableIIMInputStream) {
+			r = ((TransferableIIMInputStream) subStream).transferTo(position + offset, count, target);
+		} else {
+			byte[] buffer = new byte[(int) Math.min(count, 4096)];
+			int n = read(position, buffer, 0, buffer.length);
+			r = 0;
+			if (n > 0) {
+				ByteBuffer src = ByteBuffer.wrap(buffer, 0, n);
+				while (src.hasRemaining()) {
+					r += target.write(src);
+				}
+			}
+		}
+		return r;
+	}
+
 	public void close() throws IOException {
 		subStream.close();
 	}
 
+	private void seekSubStream() throws IOException {
+		long p = position + offset;
+		if (subStream.position() != p) {
+			subStream.seek(p);
+		}
+	}
+
 	private final IIMInputStream subStream;
 	private long position;
 	private long offset;
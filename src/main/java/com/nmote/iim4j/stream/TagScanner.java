@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.function.IntPredicate;
+
+/**
+ * TagScanner searches IIMInputStream for a next data set start tag (0x1C).
+ * Cached inputs are searched in blocks, and candidate tags are accepted only
+ * if record number, data set number and length bytes that follow them look
+ * plausible, so that 0x1C bytes inside binary data set values are skipped.
+ * Values of candidates found in cached inputs must not run past end of input.
+ */
+public final class TagScanner {
+
+	/** Size of a block read from cached inputs */
+	public static final int BLOCK_SIZE = 8192;
+
+	private TagScanner() {
+	}
+
+	/**
+	 * Searches input from its current position for a next plausible data set
+	 * start tag. If tag was found input is positioned on it.
+	 *
+	 * @param input
+	 *            input to search
+	 * @return position of a start tag or -1 if EOF was reached
+	 * @throws IOException
+	 *             if input can't be read
+	 */
+	public static long find(IIMInputStream input) throws IOException {
+		return find(input, dataSet -> true);
+	}
+
+	/**
+	 * Searches input from its current position for a next plausible data set
+	 * start tag of an accepted data set. If tag was found input is positioned
+	 * on it.
+	 *
+	 * @param input
+	 *            input to search
+	 * @param dataSets
+	 *            accepts data set numbers (see IIM.DS(int, int)) of candidate
+	 *            tags, for example data sets known to a DataSetInfoFactory
+	 * @return position of a start tag or -1 if EOF was reached
+	 * @throws IOException
+	 *             if input can't be read
+	 */
+	public static long find(IIMInputStream input, IntPredicate dataSets) throws IOException {
+		if (dataSets == null) {
+			throw new NullPointerException("dataSets == null");
+		}
+		return input.isCached() ? findInBlocks(input, dataSets) : findByBytes(input, dataSets);
+	}
+
+	/**
+	 * Checks if bytes following a 0x1C tag look like data set header.
+	 *
+	 * @param b
+	 *            array holding record number, data set number and two length
+	 *            bytes
+	 * @param off
+	 *            offset of record number in b
+	 * @return true if bytes are a plausible data set header
+	 */
+	public static boolean isPlausible(byte[] b, int off) {
+		int record = b[off] & 0xFF;
+		if (record < 1 || record > 9) {
+			return false;
+		}
+		int length = (b[off + 2] & 0xFF) << 8 | b[off + 3] & 0xFF;
+		if ((length & 0x8000) != 0) {
+			// Extended data set count
+			int count = length & 0x7FFF;
+			return count >= 1 && count <= 4;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks a candidate tag at pos, followed by header bytes in b from off.
+	 */
+	private static boolean isAccepted(IIMInputStream input, long pos, byte[] b, int off, IntPredicate dataSets)
+			throws IOException {
+		if (!isPlausible(b, off) || !dataSets.test((b[off] & 0xFF) << 8 | b[off + 1] & 0xFF)) {
+			return false;
+		}
+		int length = (b[off + 2] & 0xFF) << 8 | b[off + 3] & 0xFF;
+		if ((length & 0x8000) != 0 || length == 0 || !input.isCached()) {
+			return true;
+		}
+		// Last byte of value must be in input
+		return hasByte(input, pos + 5 + length - 1);
+	}
+
+	private static boolean hasByte(IIMInputStream input, long pos) throws IOException {
+		if (input instanceof PositionalIIMInputStream) {
+			return ((PositionalIIMInputStream) input).read(pos, new byte[1], 0, 1) == 1;
+		}
+		long current = input.position();
+		try {
+			input.seek(pos);
+			return input.read() != -1;
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			input.seek(current);
+		}
+	}
+
+	private static long findInBlocks(IIMInputStream input, IntPredicate dataSets) throws IOException {
+		byte[] block = new byte[BLOCK_SIZE];
+		byte[] header = new byte[4];
+		long start = input.position();
+		for (;;) {
+			int n = input.read(block, 0, block.length);
+			if (n == -1) {
+				return -1;
+			}
+
+			boolean moved = false;
+			for (int i = 0; i < n; ++i) {
+				if (block[i] != 28) {
+					continue;
+				}
+
+				boolean plausible;
+				if (i + 4 < n) {
+					plausible = isAccepted(input, start + i, block, i + 1, dataSets);
+				} else {
+					// Header crosses block boundary
+					input.seek(start + i + 1);
+					moved = true;
+					plausible = readFully(input, header) && isAccepted(input, start + i, header, 0, dataSets);
+				}
+
+				if (plausible) {
+					input.seek(start + i);
+					return start + i;
+				}
+			}
+
+			start += n;
+			if (moved) {
+				input.seek(start);
+			}
+		}
+	}
+
+	private static long findByBytes(IIMInputStream input, IntPredicate dataSets) throws IOException {
+		// Inputs that aren't cached can only step back a few bytes
+		byte[] header = new byte[4];
+		for (;;) {
+			int tag = input.read();
+			if (tag == -1) {
+				return -1;
+			}
+			if (tag != 28) {
+				continue;
+			}
+
+			long pos = input.position() - 1;
+			if (!readFully(input, header)) {
+				return -1;
+			}
+			if (isAccepted(input, pos, header, 0, dataSets)) {
+				input.seek(pos);
+				return pos;
+			}
+			input.seek(pos + 1);
+		}
+	}
+
+	private static boolean readFully(IIMInputStream input, byte[] b) throws IOException {
+		for (int i = 0; i < b.length; ++i) {
+			int r = input.read();
+			if (r == -1) {
+				return false;
+			}
+			b[i] = (byte) r;
+		}
+		return true;
+	}
+}
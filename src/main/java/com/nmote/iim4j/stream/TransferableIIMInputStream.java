@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * TransferableIIMInputStream is a PositionalIIMInputStream that can copy its
+ * content directly to a channel, for example using
+ * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}
+ * .
+ */
+public interface TransferableIIMInputStream extends PositionalIIMInputStream {
+
+	/**
+	 * Transfers up to count bytes starting at a given stream position to a
+	 * target channel. Current stream position isn't changed.
+	 *
+	 * @param position
+	 *            stream position of a first byte to transfer
+	 * @param count
+	 *            max number of bytes to transfer
+	 * @param target
+	 *            channel to write to
+	 * @return number of bytes transferred, 0 if position is at end of stream
+	 * @throws IOException
+	 *             if stream can't be read or channel can't be written to
+	 */
+	long transferTo(long position, long count, WritableByteChannel target) throws IOException;
+}
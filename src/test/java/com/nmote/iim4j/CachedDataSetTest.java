@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.stream.ChannelIIMOutputStream;
+import com.nmote.iim4j.stream.FileIIMInputStream;
+
+public class CachedDataSetTest extends TestCase {
+
+	protected void setUp() throws Exception {
+		expected = TestData.sample();
+		file = TestData.tempFile(TestData.toBytes(expected));
+	}
+
+	public void testConcurrentGetData() throws Exception {
+		FileIIMInputStream in = new FileIIMInputStream(file);
+		try {
+			final List<DataSet> dataSets = read(in).getDataSets();
+			final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; ++t) {
+				final int first = t;
+				threads[t] = new Thread() {
+					public void run() {
+						try {
+							// Threads load values in different order
+							for (int i = 0; i < dataSets.size(); ++i) {
+								int j = (first + i) % dataSets.size();
+								byte[] data = dataSets.get(j).getData();
+								assertTrue(Arrays.equals(expected.getDataSets().get(j).getData(), data));
+							}
+						} catch (Throwable e) {
+							errors.add(e);
+						}
+					}
+				};
+				threads[t].start();
+			}
+
+			// Moving stream position doesn't affect loading
+			in.seek(0);
+			while (in.read() != -1) {
+			}
+			for (int t = 0; t < threads.length; ++t) {
+				threads[t].join();
+			}
+			assertEquals(Collections.emptyList(), errors);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testTransferTo() throws Exception {
+		CountingInputStream in = new CountingInputStream(file);
+		try {
+			IIMFile read = read(in);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			IIMWriter writer = new IIMWriter(new ChannelIIMOutputStream(Channels.newChannel(out)));
+			read.writeTo(writer);
+			writer.close();
+			assertTrue(Arrays.equals(TestData.toBytes(expected), out.toByteArray()));
+			// Values not loaded while reading (all but 1:90) were copied by
+			// channel transfers
+			assertTrue(in.transfers >= read.getDataSets().size() - 1);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testTransferToAfterSetData() throws Exception {
+		CountingInputStream in = new CountingInputStream(file);
+		try {
+			IIMFile read = read(in);
+			CachedDataSet ds = (CachedDataSet) read.getDataSets().get(4);
+			ds.setData("replaced".getBytes("ISO-8859-1"));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ds.writeDataTo(new ChannelIIMOutputStream(Channels.newChannel(out)));
+			assertEquals("replaced", out.toString("ISO-8859-1"));
+			assertEquals(0, in.transfers);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static IIMFile read(FileIIMInputStream in) throws Exception {
+		IIMFile result = new IIMFile();
+		result.readFrom(new IIMReader(in), 0);
+		for (DataSet ds : result.getDataSets()) {
+			assertTrue(ds instanceof CachedDataSet);
+		}
+		return result;
+	}
+
+	/**
+	 * Counts channel transfers.
+	 */
+	private static class CountingInputStream extends FileIIMInputStream {
+
+		CountingInputStream(File file) throws IOException {
+			super(file);
+		}
+
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			++transfers;
+			return super.transferTo(position, count, target);
+		}
+
+		int transfers;
+	}
+
+	private IIMFile expected;
+	private File file;
+}
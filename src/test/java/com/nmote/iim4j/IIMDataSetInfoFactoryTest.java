@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.dataset.UnsupportedDataSetException;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+import com.nmote.iim4j.serialize.BinarySerializer;
+import com.nmote.iim4j.serialize.DefaultSerializerFactory;
+import com.nmote.iim4j.serialize.Serializer;
+import com.nmote.iim4j.serialize.SerializerFactory;
+
+public class IIMDataSetInfoFactoryTest extends TestCase {
+
+	public void testUnsupportedExceptionsAreCached() throws Exception {
+		IIMDataSetInfoFactory f = IIMDataSetInfoFactory.forVersion("4");
+		assertNull(f.find(IIM.DS(7, 200)));
+		UnsupportedDataSetException first = unsupported(f);
+		UnsupportedDataSetException second = unsupported(f);
+		assertSame(first, second);
+		assertEquals("7:200", second.getMessage());
+
+		// Shared instance can't be changed by callers
+		assertEquals(0, first.getStackTrace().length);
+		first.addSuppressed(new Exception());
+		assertEquals(0, first.getSuppressed().length);
+		try {
+			first.initCause(new Exception());
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertNull(first.getCause());
+	}
+
+	public void testReaderFindsUnsupported() throws Exception {
+		final int[] creates = new int[1];
+		IIMDataSetInfoFactory f = new IIMDataSetInfoFactory() {
+			public DataSetInfo create(int dataSet) throws InvalidDataSetException {
+				++creates[0];
+				return super.create(dataSet);
+			}
+		};
+		// Unsupported 7:200 between two object names
+		IIMFile names = new IIMFile();
+		names.add(IIM.OBJECT_NAME, "name");
+		byte[] name = names.toByteArray();
+		byte[] data = new byte[2 * name.length + 8];
+		System.arraycopy(name, 0, data, 0, name.length);
+		data[name.length] = 0x1C;
+		data[name.length + 1] = 7;
+		data[name.length + 2] = (byte) 200;
+		data[name.length + 4] = 3;
+		System.arraycopy(name, 0, data, name.length + 8, name.length);
+
+		for (int mode : new int[] { IIMReader.UNSUPPORTED_SKIP, IIMReader.UNSUPPORTED_BINARY }) {
+			IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(data), f);
+			reader.setUnsupportedDataSets(mode);
+			int count = 0;
+			while (reader.read() != null) {
+				++count;
+			}
+			assertEquals(mode == IIMReader.UNSUPPORTED_SKIP ? 2 : 3, count);
+			assertEquals(1, reader.getUnsupportedCount());
+		}
+		assertEquals(0, creates[0]);
+	}
+
+	public void testCreate() throws Exception {
+		IIMDataSetInfoFactory f = IIMDataSetInfoFactory.forVersion("4");
+		assertSame(f, IIMDataSetInfoFactory.forVersion("4"));
+		assertSame(f.create(IIM.CAPTION_ABSTRACT), f.find(IIM.CAPTION_ABSTRACT));
+		assertEquals(IIM.CAPTION_ABSTRACT, f.create(IIM.CAPTION_ABSTRACT).getDataSetNumber());
+	}
+
+	public void testForVersionShared() throws Exception {
+		assertSame(IIMDataSetInfoFactory.VERSION_4, IIMDataSetInfoFactory.forVersion("4"));
+		assertSame(IIMDataSetInfoFactory.VERSION_4,
+				IIMDataSetInfoFactory.forVersion("4", new DefaultSerializerFactory()));
+
+		// Custom serializer factories get their own shared instance
+		SerializerFactory sf = new SerializerFactory() {
+			public Serializer create(String spec) {
+				return new BinarySerializer(null);
+			}
+		};
+		IIMDataSetInfoFactory custom = IIMDataSetInfoFactory.forVersion("4", sf);
+		assertNotSame(IIMDataSetInfoFactory.VERSION_4, custom);
+		assertSame(custom, IIMDataSetInfoFactory.forVersion("4", sf));
+		assertTrue(custom.create(IIM.CAPTION_ABSTRACT).getSerializer() instanceof BinarySerializer);
+	}
+
+	public void testForVersionSubclasses() throws Exception {
+		// Same subclass, configured differently
+		IIMDataSetInfoFactory binary = IIMDataSetInfoFactory.forVersion("4", new ConfiguredSerializerFactory(true));
+		IIMDataSetInfoFactory defaults = IIMDataSetInfoFactory.forVersion("4", new ConfiguredSerializerFactory(false));
+		assertNotSame(binary, defaults);
+		assertTrue(binary.create(IIM.CAPTION_ABSTRACT).getSerializer() instanceof BinarySerializer);
+		assertFalse(defaults.create(IIM.CAPTION_ABSTRACT).getSerializer() instanceof BinarySerializer);
+	}
+
+	public void testForVersionNull() throws Exception {
+		try {
+			IIMDataSetInfoFactory.forVersion("4", null);
+			fail();
+		} catch (NullPointerException expected) {
+			assertEquals("serializerFactory == null", expected.getMessage());
+		}
+		try {
+			IIMDataSetInfoFactory.forVersion(null);
+			fail();
+		} catch (NullPointerException expected) {
+			assertEquals("version == null", expected.getMessage());
+		}
+	}
+
+	public void testForVersionConcurrent() throws Exception {
+		final SerializerFactory sf = new SerializerFactory() {
+			public Serializer create(String spec) {
+				return new BinarySerializer(null);
+			}
+		};
+		final IIMDataSetInfoFactory[] found = new IIMDataSetInfoFactory[8];
+		Thread[] threads = new Thread[found.length];
+		for (int t = 0; t < threads.length; ++t) {
+			final int i = t;
+			threads[t] = new Thread() {
+				public void run() {
+					found[i] = IIMDataSetInfoFactory.forVersion("4", sf);
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t].join();
+		}
+		for (int t = 0; t < found.length; ++t) {
+			assertNotNull(found[t]);
+			assertSame(found[0], found[t]);
+		}
+	}
+
+	private static class ConfiguredSerializerFactory extends DefaultSerializerFactory {
+
+		ConfiguredSerializerFactory(boolean binary) {
+			this.binary = binary;
+		}
+
+		public Serializer create(String spec) {
+			return binary ? new BinarySerializer(null) : super.create(spec);
+		}
+
+		private final boolean binary;
+	}
+
+	private static UnsupportedDataSetException unsupported(IIMDataSetInfoFactory f) throws Exception {
+		try {
+			f.create(IIM.DS(7, 200));
+		} catch (UnsupportedDataSetException e) {
+			return e;
+		}
+		fail();
+		return null;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+
+public class IIMDecoderTest extends TestCase {
+
+	public void testChunks() throws Exception {
+		byte[] data = TestData.sampleBytes();
+		List<String> expected = TestData.readAll(new ByteBufferIIMInputStream(data));
+		for (int size : new int[] { 1, 2, 3, 5, 7, 100, 8193, data.length }) {
+			IIMDecoder decoder = new IIMDecoder();
+			List<String> actual = new ArrayList<String>();
+			for (int i = 0; i < data.length; i += size) {
+				for (DataSet ds : decoder.feed(ByteBuffer.wrap(data, i, Math.min(size, data.length - i)))) {
+					actual.add(ds.toString() + "/" + ds.getData().length);
+				}
+			}
+			decoder.finish();
+			assertEquals("chunk size " + size, expected, actual);
+		}
+	}
+
+	public void testInvalidExtendedCount() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		try {
+			decoder.feed(ByteBuffer.wrap(new byte[] { 0x1C, 2, 120, (byte) 0x80, 0 }));
+			fail();
+		} catch (IIMFormatException expected) {
+		}
+		decoder.finish();
+		assertEquals(1, decoder.feed(ByteBuffer.wrap(objectName())).size());
+	}
+
+	public void testNegativeExtendedLength() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		try {
+			decoder.feed(ByteBuffer.wrap(new byte[] { 0x1C, 2, 120, (byte) 0x80, 4, (byte) 0xFF, 0, 0, 0 }));
+			fail();
+		} catch (IIMFormatException expected) {
+		}
+		assertEquals(1, decoder.feed(ByteBuffer.wrap(objectName())).size());
+	}
+
+	public void testMaxDataSetLength() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		decoder.setMaxDataSetLength(100);
+		try {
+			decoder.feed(ByteBuffer.wrap(new byte[] { 0x1C, 2, 120, 0, 101 }));
+			fail();
+		} catch (IIMFormatException expected) {
+		}
+		assertEquals(1, decoder.feed(ByteBuffer.wrap(objectName())).size());
+	}
+
+	public void testHugeLength() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		// Doesn't allocate 2GB buffer for a value that never arrives
+		assertTrue(decoder.feed(ByteBuffer.wrap(new byte[] { 0x1C, 2, 120, (byte) 0x80, 4, 0x7F, (byte) 0xFF,
+				(byte) 0xFF, (byte) 0xFF, 1, 2, 3 })).isEmpty());
+		try {
+			decoder.finish();
+			fail();
+		} catch (EOFException expected) {
+		}
+		decoder.reset();
+		decoder.finish();
+		assertEquals(1, decoder.feed(ByteBuffer.wrap(objectName())).size());
+	}
+
+	public void testBadTag() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		ByteBuffer chunk = ByteBuffer.wrap(concat(new byte[] { 0 }, objectName()));
+		try {
+			decoder.feed(chunk);
+			fail();
+		} catch (IIMFormatException expected) {
+		}
+		assertEquals(1, decoder.feed(chunk).size());
+	}
+
+	public void testUnsupported() throws Exception {
+		byte[] unsupported = { 0x1C, 2, (byte) 254, 0, 3, 1, 2, 3 };
+		IIMDecoder decoder = new IIMDecoder();
+		ByteBuffer chunk = ByteBuffer.wrap(concat(unsupported, objectName()));
+		try {
+			decoder.feed(chunk);
+			fail();
+		} catch (InvalidDataSetException expected) {
+		}
+		assertEquals(1, decoder.feed(chunk).size());
+
+		decoder = new IIMDecoder();
+		decoder.setUnsupportedDataSets(IIMReader.UNSUPPORTED_SKIP);
+		assertEquals(1, decoder.feed(ByteBuffer.wrap(concat(unsupported, objectName()))).size());
+		assertEquals(1, decoder.getUnsupportedCount());
+
+		decoder = new IIMDecoder();
+		decoder.setUnsupportedDataSets(IIMReader.UNSUPPORTED_BINARY);
+		assertEquals(2, decoder.feed(ByteBuffer.wrap(concat(unsupported, objectName()))).size());
+	}
+
+	public void testGarbageBetweenDataSets() throws Exception {
+		byte[] data = concat(objectName(), concat(GARBAGE, concat(objectName(), objectName())));
+		for (int size : new int[] { 1, 2, 3, 5, 7, data.length }) {
+			IIMDecoder decoder = new IIMDecoder();
+			List<DataSet> decoded = new ArrayList<DataSet>();
+			int errors = 0;
+			for (int i = 0; i < data.length; i += size) {
+				ByteBuffer chunk = ByteBuffer.wrap(data, i, Math.min(size, data.length - i));
+				while (chunk.hasRemaining()) {
+					try {
+						decoder.feed(chunk, decoded);
+					} catch (IIMFormatException e) {
+						++errors;
+					}
+				}
+			}
+			decoder.finish();
+			assertEquals("chunk size " + size, 1, errors);
+			assertEquals("chunk size " + size, 3, decoded.size());
+			assertEquals(1, decoder.getResyncCount());
+		}
+	}
+
+	public void testGarbageRecover() throws Exception {
+		IIMDecoder decoder = new IIMDecoder();
+		decoder.setRecover(true);
+		byte[] data = concat(GARBAGE, concat(objectName(), concat(new byte[] { 0x1C, 2, 120, (byte) 0x80, 0 },
+				objectName())));
+		assertEquals(2, decoder.feed(ByteBuffer.wrap(data)).size());
+		assertEquals(2, decoder.getResyncCount());
+		decoder.finish();
+	}
+
+	private static byte[] objectName() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.OBJECT_NAME, "name");
+		return f.toByteArray();
+	}
+
+	/**
+	 * Corrupt bytes with implausible tags, tag of an unsupported data set and
+	 * a tag right before a next data set.
+	 */
+	private static final byte[] GARBAGE = { 1, 2, 0x1C, 0, 0, 0, 0, 5, 0x1C, 0x1C, (byte) 0x80, 0x1C, 9,
+			(byte) 200, 0, 3, 0x1C };
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = new byte[a.length + b.length];
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+
+public class IIMFilePublisherTest extends TestCase {
+
+	public void testPublish() throws Exception {
+		byte[] one = TestData.sampleBytes();
+		byte[] two = new byte[one.length * 2];
+		System.arraycopy(one, 0, two, 0, one.length);
+		System.arraycopy(one, 0, two, one.length, one.length);
+
+		Recorder recorder = new Recorder();
+		publisher(two, Runnable::run).subscribe(recorder);
+		assertTrue(recorder.files.isEmpty());
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.files.size());
+		recorder.subscription.request(5);
+		assertEquals(2, recorder.files.size());
+		assertEquals(TestData.sample().getDataSets().size(), recorder.files.get(1).getDataSets().size());
+		assertEquals(1, recorder.completed);
+		assertTrue(recorder.errors.isEmpty());
+	}
+
+	public void testCancelInOnNext() throws Exception {
+		byte[] one = TestData.sampleBytes();
+		byte[] two = new byte[one.length * 2];
+		System.arraycopy(one, 0, two, 0, one.length);
+		System.arraycopy(one, 0, two, one.length, one.length);
+
+		Recorder recorder = new Recorder() {
+			public void onNext(IIMFile file) {
+				super.onNext(file);
+				subscription.cancel();
+			}
+		};
+		publisher(two, Runnable::run).subscribe(recorder);
+		recorder.subscription.request(Long.MAX_VALUE);
+		assertEquals(1, recorder.files.size());
+		assertEquals(0, recorder.completed);
+		assertTrue(recorder.errors.isEmpty());
+		// Requests after cancel are ignored
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.files.size());
+		assertTrue(recorder.errors.isEmpty());
+	}
+
+	public void testEndWithout9_10() throws Exception {
+		IIMFile last = TestData.sample();
+		last.remove(IIM.DS(9, 10));
+		byte[] one = TestData.sampleBytes();
+		byte[] tail = TestData.toBytes(last);
+		byte[] data = new byte[one.length + tail.length];
+		System.arraycopy(one, 0, data, 0, one.length);
+		System.arraycopy(tail, 0, data, one.length, tail.length);
+
+		Recorder recorder = new Recorder();
+		publisher(data, Runnable::run).subscribe(recorder);
+		recorder.subscription.request(Long.MAX_VALUE);
+		assertEquals(2, recorder.files.size());
+		assertEquals(last.getDataSets().size(), recorder.files.get(1).getDataSets().size());
+		assertEquals(1, recorder.completed);
+		assertTrue(recorder.errors.isEmpty());
+
+		// Only object in a source, end is found by parsing ahead and
+		// signalled without further demand
+		recorder = new Recorder();
+		publisher(tail, Runnable::run).subscribe(recorder);
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.files.size());
+		assertEquals(1, recorder.completed);
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.files.size());
+		assertEquals(1, recorder.completed);
+	}
+
+	public void testParseWhileSubscriberIsBusy() throws Exception {
+		byte[] one = TestData.sampleBytes();
+		byte[] three = new byte[one.length * 3];
+		for (int i = 0; i < 3; ++i) {
+			System.arraycopy(one, 0, three, one.length * i, one.length);
+		}
+
+		final CountDownLatch parsed = new CountDownLatch(2);
+		final CountDownLatch finished = new CountDownLatch(1);
+		final List<Boolean> overlapped = new CopyOnWriteArrayList<Boolean>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			IIMFilePublisher publisher = new IIMFilePublisher(new IIMReader(new ByteBufferIIMInputStream(three)),
+					() -> {
+						IIMFile file = new IIMFile() {
+							public void readFrom(IIMReader reader) throws IOException, InvalidDataSetException {
+								super.readFrom(reader);
+								parsed.countDown();
+							}
+						};
+						file.setStopAfter9_10(true);
+						return file;
+					}, executor, 1);
+			Recorder recorder = new Recorder() {
+				public void onNext(IIMFile file) {
+					super.onNext(file);
+					if (files.size() == 1) {
+						// Second object is parsed while first is processed
+						try {
+							overlapped.add(parsed.await(10, TimeUnit.SECONDS));
+						} catch (InterruptedException e) {
+							overlapped.add(false);
+						}
+					}
+				}
+
+				public void onComplete() {
+					super.onComplete();
+					finished.countDown();
+				}
+			};
+			publisher.subscribe(recorder);
+			recorder.subscription.request(Long.MAX_VALUE);
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList(true), overlapped);
+			assertEquals(3, recorder.files.size());
+			assertTrue(recorder.errors.isEmpty());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testPrefetchIsBounded() throws Exception {
+		byte[] one = TestData.sampleBytes();
+		byte[] three = new byte[one.length * 3];
+		for (int i = 0; i < 3; ++i) {
+			System.arraycopy(one, 0, three, one.length * i, one.length);
+		}
+
+		final int[] created = new int[1];
+		IIMFilePublisher publisher = new IIMFilePublisher(new IIMReader(new ByteBufferIIMInputStream(three)), () -> {
+			++created[0];
+			IIMFile file = new IIMFile();
+			file.setStopAfter9_10(true);
+			return file;
+		}, Runnable::run, 1);
+		Recorder recorder = new Recorder();
+		publisher.subscribe(recorder);
+		assertEquals(0, created[0]);
+		recorder.subscription.request(1);
+		assertEquals(1, recorder.files.size());
+		// One delivered and one waiting in prefetch queue
+		assertEquals(2, created[0]);
+		recorder.subscription.request(1);
+		assertEquals(2, recorder.files.size());
+		assertEquals(3, created[0]);
+	}
+
+	public void testRejected() throws Exception {
+		Recorder recorder = new Recorder();
+		publisher(TestData.sampleBytes(), task -> {
+			throw new RejectedExecutionException();
+		}).subscribe(recorder);
+		recorder.subscription.request(1);
+		recorder.subscription.request(1);
+		recorder.subscription.cancel();
+		assertEquals(1, recorder.errors.size());
+		assertTrue(recorder.errors.get(0) instanceof RejectedExecutionException);
+		assertEquals(0, recorder.completed);
+	}
+
+	public void testSecondSubscriber() throws Exception {
+		IIMFilePublisher publisher = publisher(TestData.sampleBytes(), Runnable::run);
+		publisher.subscribe(new Recorder());
+		Recorder recorder = new Recorder();
+		publisher.subscribe(recorder);
+		assertEquals(1, recorder.errors.size());
+		assertTrue(recorder.errors.get(0) instanceof IllegalStateException);
+	}
+
+	private static IIMFilePublisher publisher(byte[] data, Executor executor) {
+		return new IIMFilePublisher(new IIMReader(new ByteBufferIIMInputStream(data)), () -> {
+			IIMFile file = new IIMFile();
+			file.setStopAfter9_10(true);
+			return file;
+		}, executor);
+	}
+
+	private static class Recorder implements IIMFilePublisher.Subscriber<IIMFile> {
+
+		public void onSubscribe(IIMFilePublisher.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		public void onNext(IIMFile file) {
+			files.add(file);
+		}
+
+		public void onError(Throwable throwable) {
+			errors.add(throwable);
+		}
+
+		public void onComplete() {
+			++completed;
+		}
+
+		int completed;
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final List<IIMFile> files = new ArrayList<IIMFile>();
+		IIMFilePublisher.Subscription subscription;
+	}
+}
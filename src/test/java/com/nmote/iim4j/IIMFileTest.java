@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.serialize.SerializationException;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+
+public class IIMFileTest extends TestCase {
+
+	protected void setUp() throws Exception {
+		// Two IIM objects, each ended by 9:10
+		IIMFile second = new IIMFile();
+		second.add(IIM.OBJECT_NAME, "Second");
+		second.add(IIM.KEYWORDS, "kw3");
+		second.add(IIM.DS(9, 10), 1L);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(TestData.sampleBytes());
+		out.write(second.toByteArray());
+		data = out.toByteArray();
+	}
+
+	public void testStopAfter9_10() throws Exception {
+		IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(data));
+		IIMFile first = new IIMFile();
+		first.readFrom(reader);
+		assertTrue(Arrays.equals(TestData.sampleBytes(), first.toByteArray()));
+		IIMFile second = new IIMFile();
+		second.readFrom(reader);
+		assertEquals("Second", second.get(IIM.OBJECT_NAME));
+	}
+
+	public void testProjectionStopsAfter9_10() throws Exception {
+		IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(data));
+		IIMFile first = new IIMFile();
+		first.readFrom(reader, 0, IIM.KEYWORDS);
+		assertEquals(Arrays.asList("kw1", "kw2"), first.getAll(IIM.KEYWORDS));
+
+		IIMFile second = new IIMFile();
+		second.readFrom(reader, 0, IIM.KEYWORDS, IIM.OBJECT_NAME);
+		assertEquals(Arrays.asList("kw3"), second.getAll(IIM.KEYWORDS));
+		assertEquals("Second", second.get(IIM.OBJECT_NAME));
+		assertNull(second.get(IIM.DS(9, 10)));
+	}
+
+	public void testProjectionWithoutStop() throws Exception {
+		IIMFile file = new IIMFile();
+		file.setStopAfter9_10(false);
+		file.readFrom(new IIMReader(new ByteBufferIIMInputStream(data)), 0, IIM.KEYWORDS);
+		assertEquals(Arrays.asList("kw1", "kw2", "kw3"), file.getAll(IIM.KEYWORDS));
+	}
+
+	public void testProjectionStopsEarly() throws Exception {
+		IIMFile file = new IIMFile();
+		IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(data));
+		file.readFrom(reader, 0, IIM.OBJECT_NAME);
+		assertEquals(1, file.getDataSets().size());
+		assertEquals("Object name čćž", file.get(IIM.OBJECT_NAME));
+		// Next read continues after object name
+		assertEquals(IIM.KEYWORDS, reader.read().getInfo().getDataSetNumber());
+	}
+
+	public void testSetDataSetsCopiesList() throws Exception {
+		IIMFile source = new IIMFile();
+		source.add(IIM.OBJECT_NAME, "first");
+		source.add(IIM.KEYWORDS, "kw1");
+		List<DataSet> list = new ArrayList<DataSet>(source.getDataSets());
+
+		IIMFile file = new IIMFile();
+		file.setDataSets(list);
+		assertEquals("first", file.get(IIM.OBJECT_NAME));
+
+		list.clear();
+		assertEquals(2, file.getDataSets().size());
+		assertEquals("first", file.get(IIM.OBJECT_NAME));
+		assertEquals(Arrays.asList("kw1"), file.getAll(IIM.KEYWORDS));
+
+		file.getDataSets().remove(0);
+		assertNull(file.get(IIM.OBJECT_NAME));
+		assertEquals(Arrays.asList("kw1"), file.getAll(IIM.KEYWORDS));
+	}
+
+	public void testDateTimeHelperZone() throws Exception {
+		IIMFile file = new IIMFile();
+		file.add(IIM.DATE_CREATED, "20150110");
+		file.add(IIM.TIME_CREATED, "123000");
+		file.add(IIM.DIGITAL_CREATION_DATE, "20150710");
+		file.add(IIM.DIGITAL_CREATION_TIME, "123000-0130");
+
+		TimeZone zone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("Europe/Zagreb"));
+			// Times without offset are in default zone for all helpers
+			assertEquals(Instant.parse("2015-01-10T11:30:00Z"),
+					file.getDateTimeHelper(IIM.DATE_CREATED, IIM.TIME_CREATED).toInstant());
+			assertEquals(Instant.parse("2015-01-10T11:30:00Z"),
+					file.getInstantHelper(IIM.DATE_CREATED, IIM.TIME_CREATED));
+			assertEquals(OffsetDateTime.parse("2015-01-10T12:30:00+01:00"),
+					file.getOffsetDateTimeHelper(IIM.DATE_CREATED, IIM.TIME_CREATED));
+
+			// Explicit offset is used by all helpers
+			Instant expected = Instant.parse("2015-07-10T14:00:00Z");
+			assertEquals(expected,
+					file.getDateTimeHelper(IIM.DIGITAL_CREATION_DATE, IIM.DIGITAL_CREATION_TIME).toInstant());
+			assertEquals(expected, file.getInstantHelper(IIM.DIGITAL_CREATION_DATE, IIM.DIGITAL_CREATION_TIME));
+		} finally {
+			TimeZone.setDefault(zone);
+		}
+	}
+
+	public void testInvalidDate() throws Exception {
+		IIMFile file = new IIMFile();
+		file.add(IIM.DATE_CREATED, "20150230");
+		file.add(IIM.TIME_CREATED, "123000+0000");
+		// SimpleDateFormat used to roll it over to March 2nd
+		try {
+			file.getDateTimeHelper(IIM.DATE_CREATED, IIM.TIME_CREATED);
+			fail();
+		} catch (SerializationException expected) {
+		}
+		try {
+			file.getInstantHelper(IIM.DATE_CREATED, IIM.TIME_CREATED);
+			fail();
+		} catch (SerializationException expected) {
+		}
+	}
+
+	private byte[] data;
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DataSetFilter;
+import com.nmote.iim4j.stream.BufferedFileIIMInputStream;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+import com.nmote.iim4j.stream.CountingFileChannel;
+import com.nmote.iim4j.stream.IIMInputStream;
+import com.nmote.iim4j.stream.StreamIIMInputStream;
+
+public class IIMReaderTest extends TestCase {
+
+	public void testParse() throws Exception {
+		List<DataSet> expected = TestData.sample().getDataSets();
+		for (IIMInputStream in : parseInputs(TestData.sampleBytes())) {
+			Visitor visitor = new Visitor(false);
+			new IIMReader(in).parse(visitor);
+			in.close();
+			assertParsed(expected, visitor);
+		}
+	}
+
+	public void testParseSkipsNotAccepted() throws Exception {
+		// Only records 2 and 8, including large values that are skipped
+		List<DataSet> expected = new ArrayList<DataSet>();
+		for (DataSet ds : TestData.sample().getDataSets()) {
+			int record = ds.getInfo().getDataSetNumber() >> 8;
+			if (record == 2 || record == 8) {
+				expected.add(ds);
+			}
+		}
+		for (IIMInputStream in : parseInputs(TestData.sampleBytes())) {
+			Visitor visitor = new Visitor(false) {
+				public boolean accept(int dataSet) {
+					return dataSet >> 8 == 2 || dataSet >> 8 == 8;
+				}
+			};
+			new IIMReader(in).parse(visitor);
+			in.close();
+			assertParsed(expected, visitor);
+		}
+	}
+
+	public void testParseTruncatedReportsError() throws Exception {
+		byte[] data = truncated();
+		for (IIMInputStream in : inputs(data)) {
+			Visitor visitor = new Visitor(false);
+			try {
+				new IIMReader(in).parse(visitor);
+				fail();
+			} catch (EOFException expected) {
+				assertEquals(Arrays.asList(expected), visitor.errors);
+			}
+		}
+	}
+
+	public void testParseTruncatedRecovers() throws Exception {
+		byte[] data = truncated();
+		for (IIMInputStream in : inputs(data)) {
+			Visitor visitor = new Visitor(true);
+			new IIMReader(in).parse(visitor);
+			assertFalse(visitor.errors.isEmpty());
+			assertTrue(visitor.errors.get(0) instanceof EOFException);
+		}
+	}
+
+	public void testSpliteratorEnd() throws Exception {
+		int expected = TestData.readAll(new ByteBufferIIMInputStream(TestData.sampleBytes())).size();
+		for (ReadErrorPolicy policy : POLICIES) {
+			IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(TestData.sampleBytes()));
+			Spliterator<DataSet> s = reader.spliterator(policy);
+			int count = 0;
+			while (s.tryAdvance(ds -> {
+			})) {
+				++count;
+			}
+			assertEquals(expected, count);
+			assertFalse(s.tryAdvance(ds -> fail()));
+			assertFalse(s.tryAdvance(ds -> fail()));
+		}
+	}
+
+	public void testSpliteratorEndAfterError() throws Exception {
+		Spliterator<DataSet> s = new IIMReader(new ByteBufferIIMInputStream(truncated()))
+				.spliterator(ReadErrorPolicy.THROW);
+		try {
+			while (s.tryAdvance(ds -> {
+			})) {
+			}
+			fail();
+		} catch (UncheckedIOException expected) {
+		}
+		assertFalse(s.tryAdvance(ds -> fail()));
+	}
+
+	public void testStream() throws Exception {
+		byte[] data = TestData.sampleBytes();
+		int expected = TestData.readAll(new ByteBufferIIMInputStream(data)).size();
+		for (ReadErrorPolicy policy : POLICIES) {
+			assertEquals(expected, new IIMReader(new ByteBufferIIMInputStream(data)).stream(policy).count());
+		}
+		DataSet first = new IIMReader(new ByteBufferIIMInputStream(data)).stream().findFirst().get();
+		assertEquals(IIM.DS(1, 0), first.getInfo().getDataSetNumber());
+	}
+
+	public void testIteratorEnd() throws Exception {
+		Iterator<DataSet> i = new IIMReaderIterator(new IIMReader(new ByteBufferIIMInputStream(
+				TestData.sampleBytes())));
+		while (i.hasNext()) {
+			assertTrue(i.hasNext());
+			i.next();
+		}
+		assertFalse(i.hasNext());
+		try {
+			i.next();
+			fail();
+		} catch (NoSuchElementException expected) {
+		}
+		try {
+			i.remove();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testSkipLongUnsupportedStream() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.OBJECT_NAME, "name");
+		byte[] name = f.toByteArray();
+		// Unsupported 2:254 with 10000 bytes long value
+		byte[] data = new byte[5 + 10000 + name.length];
+		data[0] = 0x1C;
+		data[1] = 2;
+		data[2] = (byte) 254;
+		data[3] = (byte) (10000 >> 8);
+		data[4] = (byte) 10000;
+		System.arraycopy(name, 0, data, 10005, name.length);
+
+		for (IIMInputStream in : inputs(data)) {
+			IIMReader reader = new IIMReader(in);
+			reader.setUnsupportedDataSets(IIMReader.UNSUPPORTED_SKIP);
+			DataSet ds = reader.read();
+			assertEquals(IIM.OBJECT_NAME, ds.getInfo().getDataSetNumber());
+			assertNull(reader.read());
+			assertEquals(1, reader.getUnsupportedCount());
+		}
+	}
+
+	public void testFilterSkipsUnknownDataSet() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.OBJECT_NAME, "name");
+		byte[] name = f.toByteArray();
+		// Unknown 2:250 followed by object name
+		byte[] data = new byte[5 + 3 + name.length];
+		data[0] = 0x1C;
+		data[1] = 2;
+		data[2] = (byte) 250;
+		data[4] = 3;
+		System.arraycopy(name, 0, data, 8, name.length);
+
+		for (IIMInputStream in : inputs(data)) {
+			// Filtered out before it's looked up, so it doesn't throw
+			IIMReader reader = new IIMReader(in);
+			assertEquals(IIMReader.UNSUPPORTED_THROW, reader.getUnsupportedDataSets());
+			DataSet ds = reader.read(DataSetFilter.of(IIM.OBJECT_NAME));
+			assertEquals(IIM.OBJECT_NAME, ds.getInfo().getDataSetNumber());
+			assertNull(reader.read());
+			assertEquals(0, reader.getUnsupportedCount());
+		}
+		for (IIMInputStream in : inputs(data)) {
+			IIMFile file = new IIMFile();
+			file.setRecoverFromUnsupportedDataSet(false);
+			file.readFrom(new IIMReader(in), 0, IIM.OBJECT_NAME);
+			assertEquals("name", file.get(IIM.OBJECT_NAME));
+		}
+	}
+
+	public void testNegativeLength() throws Exception {
+		// 2:25 with 4 byte extended length 0xFFFFFFFF
+		byte[] data = { 0x1C, 2, 25, (byte) 0x80, 4, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+		for (IIMInputStream in : inputs(data)) {
+			Visitor visitor = new Visitor(false);
+			try {
+				new IIMReader(in).parse(visitor);
+				fail();
+			} catch (IIMFormatException expected) {
+				assertEquals(Arrays.asList(expected), visitor.errors);
+			}
+		}
+		for (IIMInputStream in : inputs(data)) {
+			try {
+				new IIMReader(in).read();
+				fail();
+			} catch (IIMFormatException expected) {
+			}
+		}
+	}
+
+	public void testHeadersReadAhead() throws Exception {
+		IIMFile expected = new IIMFile();
+		for (int i = 0; i < 200; ++i) {
+			expected.add(IIM.KEYWORDS, "kw" + i);
+		}
+		byte[] data = TestData.toBytes(expected);
+		CountingFileChannel channel = new CountingFileChannel(TestData.tempFile(data));
+		BufferedFileIIMInputStream in = new BufferedFileIIMInputStream(channel);
+		try {
+			in.seek(7);
+			IIMReader reader = new IIMReader(in);
+			List<DataSet> read = new ArrayList<DataSet>();
+			for (DataSet ds; (ds = reader.read()) != null;) {
+				read.add(ds);
+			}
+			assertEquals(expected.getDataSets().size(), read.size());
+			// Headers are read with positional reads through reader's
+			// read-ahead window: one read for the whole file and one at EOF,
+			// not one read per header
+			assertEquals(2, channel.getReads());
+			assertEquals("position unchanged", 7, in.position());
+
+			// Values are loaded lazily with positional reads
+			for (int i = 0; i < read.size(); ++i) {
+				assertTrue(Arrays.equals(expected.getDataSets().get(i).getData(), read.get(i).getData()));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Inputs for all parse() paths: in-memory views, positional reads into
+	 * reused array and sequential reads into reused array.
+	 */
+	private static List<IIMInputStream> parseInputs(byte[] data) throws IOException {
+		List<IIMInputStream> result = new ArrayList<IIMInputStream>(inputs(data));
+		result.add(new BufferedFileIIMInputStream(TestData.tempFile(data)));
+		return result;
+	}
+
+	private static void assertParsed(List<DataSet> expected, Visitor visitor) {
+		assertEquals(expected.size(), visitor.dataSets.size());
+		List<String> boundaries = new ArrayList<String>();
+		int record = -1;
+		for (int i = 0; i < expected.size(); ++i) {
+			DataSet ds = expected.get(i);
+			int dsn = ds.getInfo().getDataSetNumber();
+			assertEquals(dsn, visitor.dataSets.get(i).intValue());
+			assertTrue(ds.getInfo().toString(), Arrays.equals(ds.getData(), visitor.payloads.get(i)));
+			if (dsn >> 8 != record) {
+				boundaries.add(record + ">" + (dsn >> 8));
+				record = dsn >> 8;
+			}
+		}
+		assertEquals(boundaries, visitor.boundaries);
+		assertTrue(visitor.errors.isEmpty());
+	}
+
+	private static List<IIMInputStream> inputs(byte[] data) {
+		return Arrays.<IIMInputStream> asList(new ByteBufferIIMInputStream(data),
+				new StreamIIMInputStream(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * Sample data cut in a middle of preview data set value.
+	 */
+	private static byte[] truncated() throws Exception {
+		byte[] data = TestData.sampleBytes();
+		return Arrays.copyOf(data, data.length / 2);
+	}
+
+	private static class Visitor implements IIMVisitor {
+
+		Visitor(boolean recover) {
+			this.recover = recover;
+		}
+
+		public void onDataSet(int dataSet, ByteBuffer payload) {
+			// Payload view is reused, so keep a copy
+			byte[] copy = new byte[payload.remaining()];
+			payload.get(copy);
+			dataSets.add(dataSet);
+			payloads.add(copy);
+		}
+
+		public void onRecordBoundary(int previousRecord, int record) {
+			boundaries.add(previousRecord + ">" + record);
+		}
+
+		public boolean onError(IOException e) {
+			errors.add(e);
+			return recover;
+		}
+
+		final List<Integer> dataSets = new ArrayList<Integer>();
+		final List<byte[]> payloads = new ArrayList<byte[]>();
+		final List<String> boundaries = new ArrayList<String>();
+		final List<IOException> errors = new ArrayList<IOException>();
+		private final boolean recover;
+	}
+
+	private static final ReadErrorPolicy[] POLICIES = { ReadErrorPolicy.STOP, ReadErrorPolicy.RECOVER,
+			ReadErrorPolicy.THROW };
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.ConstraintViolation;
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.dataset.DataSetInfoFactory;
+import com.nmote.iim4j.dataset.DefaultDataSet;
+
+public class IIMValidatorTest extends TestCase {
+
+	public void testValid() throws Exception {
+		IIMValidator validator = IIMValidator.forFactory(IIMDataSetInfoFactory.VERSION_4);
+		for (int record = 1; record <= 2; ++record) {
+			assertTrue(valid().validate(record).isEmpty());
+			assertTrue(validator.validate(valid(), record).isEmpty());
+		}
+	}
+
+	public void testRecords() throws Exception {
+		IIMFile file = valid();
+		file.remove(IIM.DS(2, 0));
+		List<String> expected = new ArrayList<String>();
+		for (int record = 1; record <= 3; ++record) {
+			expected.addAll(messages(file.validate(record)));
+		}
+		assertEquals(expected, messages(file.validate()));
+		assertTrue(expected.contains("2:0 " + ConstraintViolation.MANDATORY_MISSING));
+		assertTrue(expected.contains("3:0 " + ConstraintViolation.MANDATORY_MISSING));
+		assertFalse(expected.contains("1:0 " + ConstraintViolation.MANDATORY_MISSING));
+	}
+
+	public void testMandatoryMissing() throws Exception {
+		IIMFile file = valid();
+		file.remove(IIM.DS(1, 30));
+		file.remove(IIM.DS(2, 0));
+		assertEquals(Arrays.asList("1:30 " + ConstraintViolation.MANDATORY_MISSING), messages(file.validate(1)));
+		assertEquals(Arrays.asList("2:0 " + ConstraintViolation.MANDATORY_MISSING), messages(file.validate(2)));
+	}
+
+	public void testRepeated() throws Exception {
+		IIMFile file = valid();
+		file.add(IIM.OBJECT_NAME, "first");
+		file.add(IIM.OBJECT_NAME, "second");
+		file.add(IIM.KEYWORDS, "kw1");
+		file.add(IIM.KEYWORDS, "kw2");
+		assertEquals(Arrays.asList("2:5 " + ConstraintViolation.REPEATABLE_REPEATED), messages(file.validate(2)));
+	}
+
+	public void testInvalidValue() throws Exception {
+		IIMFile file = valid();
+		file.remove(IIM.DS(1, 40));
+		file.add(new DefaultDataSet(IIMDataSetInfoFactory.VERSION_4.create(IIM.DS(1, 40)), "abc".getBytes("ISO-8859-1")));
+		assertEquals(Arrays.asList("1:40 " + ConstraintViolation.INVALID_VALUE), messages(file.validate(1, true)));
+		assertTrue(file.validate(2, true).isEmpty());
+		// Values aren't checked by default
+		assertTrue(file.validate(1).isEmpty());
+		assertTrue(IIMValidator.forFactory(IIMDataSetInfoFactory.VERSION_4).validate(file, 1).isEmpty());
+	}
+
+	public void testOrder() throws Exception {
+		IIMFile file = valid();
+		file.remove(IIM.DS(1, 0));
+		file.add(IIM.DS(1, 20), 2);
+		file.remove(IIM.DS(1, 40));
+		file.add(new DefaultDataSet(IIMDataSetInfoFactory.VERSION_4.create(IIM.DS(1, 40)), "abc".getBytes("ISO-8859-1")));
+		file.remove(IIM.DS(1, 70));
+
+		// Violations are reported in data set order, as checked one by one
+		List<String> expected = new ArrayList<String>();
+		for (int ds = 0; ds < 250; ++ds) {
+			DataSetInfo info = IIMReader.find(IIMDataSetInfoFactory.VERSION_4, IIM.DS(1, ds));
+			if (info != null) {
+				expected.addAll(messages(file.validate(info)));
+			}
+		}
+		assertEquals(expected, messages(file.validate(1, true)));
+		assertEquals(Arrays.asList("1:0 " + ConstraintViolation.MANDATORY_MISSING,
+				"1:20 " + ConstraintViolation.REPEATABLE_REPEATED, "1:40 " + ConstraintViolation.INVALID_VALUE,
+				"1:70 " + ConstraintViolation.MANDATORY_MISSING), expected);
+		assertEquals(Arrays.asList("1:0 " + ConstraintViolation.MANDATORY_MISSING,
+				"1:20 " + ConstraintViolation.REPEATABLE_REPEATED, "1:70 " + ConstraintViolation.MANDATORY_MISSING),
+				messages(file.validate(1)));
+	}
+
+	public void testValidateAll() throws Exception {
+		IIMFile missing = valid();
+		missing.remove(IIM.DS(1, 0));
+		List<IIMFile> files = new ArrayList<IIMFile>();
+		for (int i = 0; i < 20; ++i) {
+			files.add(i % 3 == 0 ? missing : valid());
+		}
+
+		IIMValidator validator = IIMValidator.forFactory(IIMDataSetInfoFactory.VERSION_4, true);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Set<ConstraintViolation>> result = validator.validateAll(files, executor);
+			assertEquals(files.size(), result.size());
+			for (int i = 0; i < files.size(); ++i) {
+				assertEquals(messages(files.get(i).validate()), messages(result.get(i)));
+			}
+			// Executor is left running
+			assertFalse(executor.isShutdown());
+			assertEquals(result.size(), validator.validateAll(files, executor).size());
+		} finally {
+			executor.shutdown();
+		}
+
+		List<Set<ConstraintViolation>> result = validator.validateAll(files);
+		assertTrue(messages(result.get(0)).contains("1:0 " + ConstraintViolation.MANDATORY_MISSING));
+		assertFalse(messages(result.get(1)).contains("1:0 " + ConstraintViolation.MANDATORY_MISSING));
+	}
+
+	public void testSharedInstances() throws Exception {
+		DataSetInfoFactory f = IIMDataSetInfoFactory.VERSION_4;
+		assertSame(IIMValidator.forFactory(f), IIMValidator.forFactory(f, false));
+		assertSame(IIMValidator.forFactory(f, true), IIMValidator.forFactory(f, true));
+		assertNotSame(IIMValidator.forFactory(f, false), IIMValidator.forFactory(f, true));
+	}
+
+	/**
+	 * Creates a file with all mandatory data sets of records 1 and 2, but
+	 * without record 3.
+	 */
+	private static IIMFile valid() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.DS(1, 0), 4);
+		f.add(IIM.DS(1, 20), 1);
+		f.add(IIM.DS(1, 22), 2);
+		f.add(IIM.DS(1, 30), "service");
+		f.add(IIM.DS(1, 40), 12345678);
+		f.add(IIM.DS(1, 70), "20150410");
+		f.add(IIM.DS(2, 0), 4);
+		return f;
+	}
+
+	private static List<String> messages(Set<ConstraintViolation> violations) {
+		List<String> result = new ArrayList<String>();
+		for (Iterator<ConstraintViolation> i = violations.iterator(); i.hasNext();) {
+			ConstraintViolation v = i.next();
+			int dsn = v.getDataSetInfo().getDataSetNumber();
+			result.add((dsn >> 8) + ":" + (dsn & 0xFF) + " " + v.getMessage());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DefaultDataSet;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+import com.nmote.iim4j.stream.DefaultIIMOutputStream;
+import com.nmote.iim4j.stream.FileIIMInputStream;
+import com.nmote.iim4j.stream.IIMInputStream;
+
+public class IIMWriterTest extends TestCase {
+
+	public void testFailedDataSetIsNotWritten() throws Exception {
+		IIMFile file = TestData.sample();
+		DataSet good = file.getDataSets().get(4);
+		DataSet bad = new DefaultDataSet(good.getInfo(), new byte[3]) {
+			public byte[] getData() {
+				throw new RuntimeException("failed to read data");
+			}
+		};
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(out));
+		writer.write(good);
+		try {
+			writer.write(bad);
+			fail();
+		} catch (RuntimeException expected) {
+		}
+		writer.write(good);
+		writer.close();
+
+		IIMFile expected = new IIMFile();
+		expected.add(good);
+		expected.add(good);
+		assertTrue(Arrays.equals(encode(expected, -1), out.toByteArray()));
+	}
+
+	public void testWriteAllInvalidState() throws Exception {
+		IIMFile file = TestData.sample();
+		DataSet good = file.getDataSets().get(4);
+		// Load fails on truncated input, leaving neither data nor input
+		CachedDataSet failed = new CachedDataSet(new ByteBufferIIMInputStream(new byte[2]), 0, 3, good.getInfo());
+		try {
+			failed.getData();
+			fail();
+		} catch (RuntimeException expected) {
+		}
+
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(new ByteArrayOutputStream()));
+		try {
+			writer.writeAll(Arrays.asList(good, failed));
+			fail();
+		} catch (IOException e) {
+			assertEquals("invalid state", e.getMessage());
+		}
+	}
+
+	public void testWriteAll() throws Exception {
+		IIMFile file = TestData.sample();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// Buffer smaller than some data sets
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(out), 100);
+		writer.writeAll(file.getDataSets());
+		writer.close();
+		assertTrue(Arrays.equals(encode(file, -1), out.toByteArray()));
+	}
+
+	public void testSmallValuesAreBuffered() throws Exception {
+		IIMFile expected = TestData.sample();
+		byte[] data = encode(expected, -1);
+		// Cached and ByteBuffer data sets
+		IIMInputStream[] inputs = { new FileIIMInputStream(TestData.tempFile(data)),
+				new ByteBufferIIMInputStream(data) };
+		for (IIMInputStream in : inputs) {
+			IIMFile file = new IIMFile();
+			file.readFrom(new IIMReader(in), 0);
+			// Whole file with room for a longest header, or smaller than
+			// some values
+			for (int bufferSize : new int[] { data.length + 9, 100 }) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				CountingOutputStream out = new CountingOutputStream(bytes);
+				IIMWriter writer = new IIMWriter(out, bufferSize);
+				writer.writeAll(file.getDataSets());
+				assertTrue(Arrays.equals(data, bytes.toByteArray()));
+				if (bufferSize > data.length) {
+					assertEquals(1, out.writes);
+				}
+			}
+			in.close();
+		}
+	}
+
+	public void testEncodedLength() throws Exception {
+		IIMFile file = TestData.sample();
+		assertEquals(encode(file, -1).length, file.encodedLength());
+		for (int record = 0; record <= 9; ++record) {
+			assertEquals("record " + record, encode(file, record).length, file.encodedLength(record));
+		}
+	}
+
+	public void testToByteArray() throws Exception {
+		IIMFile file = TestData.sample();
+		assertTrue(Arrays.equals(encode(file, -1), file.toByteArray()));
+		assertTrue(Arrays.equals(encode(file, 2), file.toByteArray(2)));
+		assertEquals(0, file.toByteArray(5).length);
+
+		// Same bytes as written by IIMWriter in a single batch
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(out));
+		file.writeTo(writer);
+		writer.close();
+		assertTrue(Arrays.equals(file.toByteArray(), out.toByteArray()));
+	}
+
+	public void testEncodeTo() throws Exception {
+		IIMFile file = TestData.sample();
+		byte[] expected = encode(file, -1);
+		ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+		buffer.position(3);
+		file.encodeTo(buffer);
+		assertEquals(3 + expected.length, buffer.position());
+		assertTrue(Arrays.equals(expected, Arrays.copyOfRange(buffer.array(), 3, 3 + expected.length)));
+
+		// Nothing is written if buffer is too small
+		buffer = ByteBuffer.allocate(expected.length - 1);
+		try {
+			file.encodeTo(buffer);
+			fail();
+		} catch (BufferOverflowException e) {
+			assertEquals(0, buffer.position());
+		}
+	}
+
+	private static class CountingOutputStream extends DefaultIIMOutputStream {
+
+		CountingOutputStream(ByteArrayOutputStream out) {
+			super(out);
+		}
+
+		public void write(byte[] b) throws IOException {
+			++writes;
+			super.write(b);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			++writes;
+			super.write(b, off, len);
+		}
+
+		public void write(int b) throws IOException {
+			++writes;
+			super.write(b);
+		}
+
+		int writes;
+	}
+
+	/**
+	 * Reference encoding of data sets in a record, or all records if record is
+	 * -1.
+	 */
+	private static byte[] encode(IIMFile file, int record) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (DataSet ds : file.getDataSets()) {
+			int dsn = ds.getInfo().getDataSetNumber();
+			if (record != -1 && dsn >> 8 != record) {
+				continue;
+			}
+			byte[] data = ds.getData();
+			out.write(0x1C);
+			out.write(dsn >> 8);
+			out.write(dsn & 0xFF);
+			if (data.length <= 32767) {
+				out.write(data.length >> 8);
+				out.write(data.length & 0xFF);
+			} else {
+				// Extended length in as few bytes as possible
+				int count = data.length > 0xFFFFFF ? 4 : data.length > 0xFFFF ? 3 : 2;
+				out.write(0x80);
+				out.write(count);
+				for (int i = count - 1; i >= 0; --i) {
+					out.write(data.length >> 8 * i & 0xFF);
+				}
+			}
+			out.write(data);
+		}
+		return out.toByteArray();
+	}
+}
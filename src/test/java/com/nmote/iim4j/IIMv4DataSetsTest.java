@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSetInfo;
+import com.nmote.iim4j.serialize.DefaultSerializerFactory;
+import com.nmote.iim4j.serialize.SerializerFactory;
+
+/**
+ * IIMv4DataSets is generated from IIMv4.txt, they must agree.
+ */
+public class IIMv4DataSetsTest extends TestCase {
+
+	public void testMetaFileMatchesTable() throws Exception {
+		SerializerFactory sf = new DefaultSerializerFactory();
+		DataSetInfo[] table = IIMv4DataSets.create(sf);
+		IIMDataSetInfoFactory metaFile = new IIMDataSetInfoFactory(
+				IIMDataSetInfoFactory.class.getResourceAsStream("IIMv4.txt"), sf);
+
+		int count = 0;
+		for (int ds = 0; ds < table.length; ++ds) {
+			DataSetInfo expected = table[ds];
+			DataSetInfo actual = metaFile.find(ds);
+			if (expected == null) {
+				assertNull("only in IIMv4.txt: " + actual, actual);
+				continue;
+			}
+			assertNotNull("missing from IIMv4.txt: " + expected, actual);
+			assertEquals(expected.getName(), actual.getName());
+			// Serializers are shared per specification
+			assertSame(expected.toString(), expected.getSerializer(), actual.getSerializer());
+			assertEquals(expected.toString(), expected.isRepeatable(), actual.isRepeatable());
+			assertEquals(expected.toString(), expected.isMandatory(), actual.isMandatory());
+			++count;
+		}
+		assertTrue(count > 100);
+	}
+
+	public void testSourceIsGenerated() throws Exception {
+		File source = new File("src/main/java/com/nmote/iim4j/IIMv4DataSets.java");
+		if (!source.exists()) {
+			// Not run from project root
+			return;
+		}
+		StringWriter generated = new StringWriter();
+		PrintWriter out = new PrintWriter(generated);
+		IIMDataSetInfoFactory.writeTable(IIMDataSetInfoFactory.class.getResourceAsStream("IIMv4.txt"), out);
+		out.flush();
+		String actual = new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8).replace("\r\n", "\n");
+		assertEquals("IIMv4DataSets.java is out of date, regenerate it with IIMDataSetInfoFactory.main(\"table\")",
+				generated.toString(), actual);
+	}
+
+	public void testTableEscapesStrings() throws Exception {
+		String meta = "# comment\n2:200:Quoted \"Name\" \\ Path:String(32):r\n";
+		StringWriter generated = new StringWriter();
+		PrintWriter out = new PrintWriter(generated);
+		IIMDataSetInfoFactory.writeTable(new ByteArrayInputStream(meta.getBytes(StandardCharsets.UTF_8)), out);
+		out.flush();
+		assertTrue(generated.toString(),
+				generated.toString().contains("add(ds, sf, 2, 200, \"Quoted \\\"Name\\\" \\\\ Path\", \"String(32)\", true, false);"));
+	}
+}
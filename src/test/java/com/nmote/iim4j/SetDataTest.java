@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.DefaultDataSet;
+import com.nmote.iim4j.stream.ByteBufferIIMInputStream;
+import com.nmote.iim4j.stream.ChannelIIMOutputStream;
+import com.nmote.iim4j.stream.DefaultIIMOutputStream;
+import com.nmote.iim4j.stream.FileIIMInputStream;
+import com.nmote.iim4j.stream.IIMInputStream;
+import com.nmote.iim4j.stream.StreamIIMInputStream;
+
+/**
+ * Data set values replaced with setData() must be written by all encoding
+ * paths, regardless of where data sets were read from.
+ */
+public class SetDataTest extends TestCase {
+
+	public void testByteBufferDataSet() throws Exception {
+		check(new ByteBufferIIMInputStream(TestData.sampleBytes()));
+	}
+
+	public void testCachedDataSet() throws Exception {
+		check(new FileIIMInputStream(TestData.tempFile(TestData.sampleBytes())));
+	}
+
+	public void testDefaultDataSet() throws Exception {
+		check(new StreamIIMInputStream(new ByteArrayInputStream(TestData.sampleBytes())));
+	}
+
+	private static void check(IIMInputStream in) throws Exception {
+		IIMFile file = new IIMFile();
+		file.readFrom(new IIMReader(in));
+		setCaption(file);
+
+		IIMFile expected = TestData.sample();
+		setCaption(expected);
+		byte[] bytes = expected.toByteArray();
+
+		assertEquals(CAPTION, file.get(IIM.CAPTION_ABSTRACT));
+		assertEquals(bytes.length, file.encodedLength());
+		assertTrue("toByteArray", Arrays.equals(bytes, file.toByteArray()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(out));
+		file.writeTo(writer);
+		writer.close();
+		assertTrue("IIMWriter", Arrays.equals(bytes, out.toByteArray()));
+
+		out = new ByteArrayOutputStream();
+		writer = new IIMWriter(new ChannelIIMOutputStream(Channels.newChannel(out)));
+		file.writeTo(writer);
+		writer.close();
+		assertTrue("IIMWriter with channel", Arrays.equals(bytes, out.toByteArray()));
+	}
+
+	private static void setCaption(IIMFile file) throws Exception {
+		for (DataSet ds : file.getDataSets()) {
+			if (ds.getInfo().getDataSetNumber() == IIM.CAPTION_ABSTRACT) {
+				((DefaultDataSet) ds).setData(CAPTION.getBytes("UTF-8"));
+			}
+		}
+	}
+
+	private static final String CAPTION = "Edited caption";
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nmote.iim4j.dataset.DataSet;
+import com.nmote.iim4j.dataset.InvalidDataSetException;
+import com.nmote.iim4j.stream.DefaultIIMOutputStream;
+import com.nmote.iim4j.stream.IIMInputStream;
+
+/**
+ * Sample IIM data shared by tests.
+ */
+public final class TestData {
+
+	private TestData() {
+	}
+
+	/**
+	 * Creates an IIM object with short, repeated, extended length and binary
+	 * data sets in records 1, 2, 7, 8 and 9.
+	 *
+	 * @return sample file
+	 */
+	public static IIMFile sample() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.DS(1, 0), 4);
+		f.add(IIM.DS(1, 90), "UTF-8");
+		// Adding 1:90 doesn't change character set used by add()
+		f.setCharacterSet("UTF-8");
+		f.add(IIM.DS(1, 20), 1);
+		f.add(IIM.DS(2, 0), 4);
+		f.add(IIM.OBJECT_NAME, "Object name čćž");
+		f.add(IIM.KEYWORDS, "kw1");
+		f.add(IIM.KEYWORDS, "kw2");
+		f.add(IIM.DS(2, 10), 5);
+		f.add(IIM.DATE_CREATED, "20150410");
+		f.add(IIM.TIME_CREATED, "123000+0200");
+		StringBuilder caption = new StringBuilder();
+		for (int i = 0; i < 1900; ++i) {
+			caption.append((char) ('a' + i % 26));
+		}
+		f.add(IIM.CAPTION_ABSTRACT, caption.toString());
+		byte[] preview = new byte[100000];
+		for (int i = 0; i < preview.length; ++i) {
+			preview[i] = (byte) (i * 7);
+		}
+		// Tag byte inside a value
+		preview[500] = 0x1C;
+		f.add(IIM.OBJECTDATA_PREVIEW_DATA, preview);
+		f.add(IIM.DS(7, 90), 123456789L);
+		f.add(IIM.DS(8, 10), new byte[40000]);
+		f.add(IIM.DS(9, 10), 40000L);
+		return f;
+	}
+
+	public static byte[] sampleBytes() throws Exception {
+		return toBytes(sample());
+	}
+
+	/**
+	 * Writes file with IIMWriter.
+	 */
+	public static byte[] toBytes(IIMFile file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(out));
+		file.writeTo(writer);
+		writer.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes data to a temporary file deleted on exit.
+	 */
+	public static File tempFile(byte[] data) throws IOException {
+		File f = File.createTempFile("iim4j", ".iim");
+		f.deleteOnExit();
+		OutputStream out = new FileOutputStream(f);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return f;
+	}
+
+	/**
+	 * Reads all data sets from input, loading their values.
+	 *
+	 * @return data sets formatted with toString()
+	 */
+	public static List<String> readAll(IIMInputStream input) throws IOException, InvalidDataSetException {
+		List<String> result = new ArrayList<String>();
+		IIMReader reader = new IIMReader(input);
+		for (DataSet ds; (ds = reader.read()) != null;) {
+			result.add(ds.toString() + "/" + ds.getData().length);
+		}
+		return result;
+	}
+}
@@ -13,7 +13,7 @@ import com.nmote.iim4j.IIMFile;
 import com.nmote.iim4j.IIMReader;
 import com.nmote.iim4j.IIMWriter;
 import com.nmote.iim4j.dataset.DataSet;
-import com.nmote.iim4j.stream.DefaultIIMOutputStream;
+import com.nmote.iim4j.stream.ChannelIIMOutputStream;
 import com.nmote.iim4j.stream.FileIIMInputStream;
 
 
@@ -26,14 +26,14 @@ public class CopyIIM {
 	public static void copy(File src, File dest) throws Exception {
 		System.out.println("Reading " + src);
 		IIMFile iimFile = new IIMFile();
-		IIMReader reader = new IIMReader(new FileIIMInputStream(src), new IIMDataSetInfoFactory());
+		IIMReader reader = new IIMReader(new FileIIMInputStream(src), IIMDataSetInfoFactory.forVersion("4"));
 		iimFile.readFrom(reader, 1000);
 		for (DataSet ds : iimFile.getDataSets()) {
 			System.out.println(ds.toString());
 		}
 
 		System.out.println("Writing " + dest);
-		IIMWriter writer = new IIMWriter(new DefaultIIMOutputStream(new FileOutputStream(dest)));
+		IIMWriter writer = new IIMWriter(new ChannelIIMOutputStream(new FileOutputStream(dest).getChannel()));
 		iimFile.writeTo(writer);
 		writer.close();
 		reader.close();
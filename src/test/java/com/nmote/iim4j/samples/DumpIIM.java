@@ -21,7 +21,7 @@ public class DumpIIM {
 	public static void dump(File file) throws Exception {
 		System.out.println("Processing " + file);
 		IIMFile iimFile = new IIMFile();
-		IIMReader reader = new IIMReader(new FileIIMInputStream(file), new IIMDataSetInfoFactory());
+		IIMReader reader = new IIMReader(new FileIIMInputStream(file), IIMDataSetInfoFactory.forVersion("4"));
 		iimFile.readFrom(reader, 10);
 		for (DataSet ds : iimFile.getDataSets()) {
 			System.out.println(ds);
@@ -25,7 +25,7 @@ public class DumpJPEG {
 		System.out.println("IPTC segment for " + file);
 		IIMFile iimFile = new IIMFile();
 		IIMReader reader = new IIMReader(new JPEGIIMInputStream(new FileIIMInputStream(file)),
-				new IIMDataSetInfoFactory());
+				IIMDataSetInfoFactory.forVersion("4"));
 		iimFile.readFrom(reader, 20);
 		for (DataSet ds : iimFile.getDataSets()) {
 			Object value = ds.getValue();
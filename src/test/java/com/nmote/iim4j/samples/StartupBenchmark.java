@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.samples;
+
+import java.io.File;
+import java.io.InputStream;
+
+import com.nmote.iim4j.IIMDataSetInfoFactory;
+import com.nmote.iim4j.serialize.DefaultSerializerFactory;
+
+/**
+ * Measures IIMDataSetInfoFactory construction from a precompiled table or by
+ * parsing IIMv4.txt meta file. It is a sample run by hand, not a part of the
+ * test suite.
+ * <p>
+ * Without a mode argument each mode is run in its own forked JVM, so neither
+ * measurement sees classes loaded or code compiled by the other:
+ *
+ * <pre>
+ * StartupBenchmark [iterations]
+ * StartupBenchmark precompiled|metafile [iterations]
+ * </pre>
+ *
+ * Each JVM first initializes IIMDataSetInfoFactory, which builds VERSION_4
+ * and loads serializer classes the same way in both modes. Only table builds
+ * after that are measured: the first one, and an average over iterations.
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0 || !MODES[0].equals(args[0]) && !MODES[1].equals(args[0])) {
+			String iterations = args.length > 0 ? args[0] : "10000";
+			for (String mode : MODES) {
+				fork(mode, iterations);
+			}
+			return;
+		}
+
+		boolean metaFile = MODES[1].equals(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		long t = System.nanoTime();
+		Class.forName(IIMDataSetInfoFactory.class.getName());
+		long init = System.nanoTime() - t;
+
+		t = System.nanoTime();
+		create(metaFile);
+		long first = System.nanoTime() - t;
+
+		t = System.nanoTime();
+		for (int i = 0; i < iterations; ++i) {
+			create(metaFile);
+		}
+		long warm = (System.nanoTime() - t) / iterations;
+
+		System.out.println((metaFile ? "IIMv4.txt" : "precompiled") + ": class init " + micros(init)
+				+ " us, first build " + micros(first) + " us, average " + micros(warm) + " us over " + iterations
+				+ " iterations");
+	}
+
+	/**
+	 * Runs one mode in a new JVM with the same class path.
+	 */
+	private static void fork(String mode, String iterations) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				StartupBenchmark.class.getName(), mode, iterations).inheritIO().start();
+		int exit = p.waitFor();
+		if (exit != 0) {
+			throw new IllegalStateException(mode + " run failed with exit code " + exit);
+		}
+	}
+
+	private static IIMDataSetInfoFactory create(boolean metaFile) throws Exception {
+		if (metaFile) {
+			InputStream in = IIMDataSetInfoFactory.class.getResourceAsStream("IIMv4.txt");
+			return new IIMDataSetInfoFactory(in, new DefaultSerializerFactory());
+		}
+		return new IIMDataSetInfoFactory();
+	}
+
+	private static String micros(long nanos) {
+		return String.valueOf(nanos / 1000.0);
+	}
+
+	private static final String[] MODES = { "precompiled", "metafile" };
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.IIM;
+import com.nmote.iim4j.IIMFile;
+import com.nmote.iim4j.TestData;
+
+public class CodedCharsetSerializerTest extends TestCase {
+
+	public void testEscapes() throws Exception {
+		assertEquals("UTF-8", s.deserialize(bytes("\u001B%G"), null));
+		assertEquals("UTF-8", s.deserialize(bytes("\u001B%/I"), null));
+		assertEquals("ISO-8859-2", s.deserialize(bytes("\u001B-B"), null));
+		assertEquals("ISO-8859-15", s.deserialize(bytes("\u001B-b"), null));
+		// US-ASCII is overridden by other designations
+		assertEquals("ISO-8859-1", s.deserialize(bytes("\u001B(B\u001B-A"), null));
+		assertEquals("US-ASCII", s.deserialize(bytes("\u001B(B"), null));
+	}
+
+	public void testEscapeRoundTrip() throws Exception {
+		String[] escapes = { "\u001B%G", "\u001B(B", "\u001B-A", "\u001B-B", "\u001B-M" };
+		for (String e : escapes) {
+			byte[] data = s.serialize(e, null);
+			assertTrue(Arrays.equals(bytes(e), data));
+			assertEquals(s.deserialize(bytes(e), null), s.deserialize(data, null));
+		}
+	}
+
+	public void testNamesAreWrittenAsEscapes() throws Exception {
+		assertTrue(Arrays.equals(bytes("\u001B%G"), s.serialize("UTF-8", null)));
+		assertTrue(Arrays.equals(bytes("\u001B%G"), s.serialize("utf8", null)));
+		assertTrue(Arrays.equals(bytes("\u001B-A"), s.serialize("ISO-8859-1", null)));
+		assertTrue(Arrays.equals(bytes("\u001B(B"), s.serialize("US-ASCII", null)));
+	}
+
+	public void testNameRoundTrip() throws Exception {
+		String[] names = { "UTF-8", "US-ASCII", "ISO-8859-1", "ISO-8859-2", "ISO-8859-9", "ISO-8859-15" };
+		for (String n : names) {
+			assertEquals(n, s.deserialize(s.serialize(n, null), null));
+			assertEquals(n, s.deserialize(s.serialize(n.toLowerCase(), null), null));
+		}
+	}
+
+	public void testUnknownNamesAreWrittenAsIs() throws Exception {
+		String[] names = { "KOI8-R", "x-unknown" };
+		for (String n : names) {
+			byte[] data = s.serialize(n, null);
+			assertTrue(Arrays.equals(bytes(n), data));
+			assertEquals(n, s.deserialize(data, null));
+		}
+		assertTrue(Arrays.equals(bytes("CP-1250"), s.serialize("Cp1250", null)));
+		assertEquals("Cp1250", s.deserialize(bytes("CP-1250"), null));
+	}
+
+	public void testWrittenDataSets() throws Exception {
+		// 1:90 is written as an ISO 2022 escape both for names and escapes
+		String[] values = { "UTF-8", "\u001B%G" };
+		for (String v : values) {
+			IIMFile f = new IIMFile();
+			f.add(IIM.DS(1, 90), v);
+			assertTrue(v, Arrays.equals(bytes("\u001C\u0001\u005A\u0000\u0003\u001B%G"), TestData.toBytes(f)));
+		}
+		IIMFile f = new IIMFile();
+		f.add(IIM.DS(1, 90), "\u001B-B");
+		assertTrue(Arrays.equals(bytes("\u001C\u0001\u005A\u0000\u0003\u001B-B"), TestData.toBytes(f)));
+	}
+
+	private static byte[] bytes(String s) throws Exception {
+		return s.getBytes("ISO-8859-1");
+	}
+
+	private final CodedCharsetSerializer s = new CodedCharsetSerializer("32");
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import java.time.LocalDate;
+
+import junit.framework.TestCase;
+
+public class DateSerializerTest extends TestCase {
+
+	public void testParseDate() throws Exception {
+		DateSerializer s = new DateSerializer("yyyyMMdd");
+		assertEquals(LocalDate.of(2015, 1, 10), parseDate(s, "20150110"));
+		invalid(s, "20150230");
+
+		// Patterns other than IIM layouts use formatter
+		s = new DateSerializer("yyyy-MM-dd");
+		assertEquals(LocalDate.of(2015, 1, 10), parseDate(s, "2015-01-10"));
+		assertEquals("2015-01-10", new String(s.format(LocalDate.of(2015, 1, 10)), "ISO-8859-1"));
+		invalid(s, "2015-02-30");
+		invalid(s, "2015-13-01");
+
+		s = new DateSerializer("dd.MM.yy 'yy'");
+		assertEquals(LocalDate.of(2016, 2, 29), parseDate(s, "29.02.16 yy"));
+		invalid(s, "29.02.15 yy");
+	}
+
+	private static LocalDate parseDate(DateSerializer s, String value) throws Exception {
+		byte[] data = value.getBytes("ISO-8859-1");
+		return s.parseDate(data, 0, data.length);
+	}
+
+	private static void invalid(DateSerializer s, String value) throws Exception {
+		try {
+			parseDate(s, value);
+			fail(value);
+		} catch (SerializationException expected) {
+		}
+	}
+}
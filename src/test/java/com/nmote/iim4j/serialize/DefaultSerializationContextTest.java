@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+public class DefaultSerializationContextTest extends TestCase {
+
+	public void testCharsetResolvedOnce() throws Exception {
+		DefaultSerializationContext ctx = new DefaultSerializationContext("utf8");
+		assertEquals(Charset.forName("UTF-8"), ctx.getCharset());
+		assertSame(ctx.getCharset(), ctx.getCharset());
+		assertEquals("utf8", ctx.getCharacterSet());
+		assertTrue(ctx.isCharacterSetAssigned());
+
+		ctx.setCharacterSet("ISO-8859-2");
+		assertEquals(Charset.forName("ISO-8859-2"), ctx.getCharset());
+	}
+
+	public void testDefaultCharset() throws Exception {
+		DefaultSerializationContext ctx = new DefaultSerializationContext();
+		assertEquals(Charset.forName("ISO-8859-1"), ctx.getCharset());
+		assertEquals("ISO-8859-1", ctx.getCharacterSet());
+		assertFalse(ctx.isCharacterSetAssigned());
+	}
+
+	public void testUnsupportedCharset() throws Exception {
+		String[] names = { "x-unknown", "not a name" };
+		for (String n : names) {
+			DefaultSerializationContext ctx = new DefaultSerializationContext(n);
+			assertNull(ctx.getCharset());
+			assertEquals(n, ctx.getCharacterSet());
+		}
+	}
+}
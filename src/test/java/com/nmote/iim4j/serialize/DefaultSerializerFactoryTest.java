@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import junit.framework.TestCase;
+
+public class DefaultSerializerFactoryTest extends TestCase {
+
+	public void testSharedInstances() {
+		DefaultSerializerFactory f = new DefaultSerializerFactory();
+		assertSame(f.create("String(64)"), new DefaultSerializerFactory().create("String(64)"));
+		assertNotSame(f.create("String(64)"), f.create("String(32)"));
+		assertTrue(f.create("Date(yyyyMMdd)") instanceof DateSerializer);
+		assertEquals(f, new DefaultSerializerFactory());
+	}
+
+	public void testSubclassesAreNotEqual() {
+		DefaultSerializerFactory a = new SubclassFactory();
+		DefaultSerializerFactory b = new SubclassFactory();
+		assertFalse(a.equals(b));
+		assertFalse(a.equals(new DefaultSerializerFactory()));
+		assertFalse(new DefaultSerializerFactory().equals(a));
+		assertEquals(a, a);
+	}
+
+	public void testUnknownType() {
+		DefaultSerializerFactory f = new DefaultSerializerFactory();
+		assertNull(f.create("Strin(64)"));
+		assertNull(f.create("String(abc)"));
+		assertNotNull(f.create("String(64)"));
+	}
+
+	private static class SubclassFactory extends DefaultSerializerFactory {
+	}
+}
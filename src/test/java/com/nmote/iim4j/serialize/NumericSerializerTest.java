@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import junit.framework.TestCase;
+
+public class NumericSerializerTest extends TestCase {
+
+	public void testNumber() throws Exception {
+		NumberSerializer s = new NumberSerializer("2");
+		assertEquals(Integer.valueOf(5), s.deserialize(bytes("05"), null));
+		assertEquals(5, s.deserializeInt(bytes("+5"), 0, 2));
+		assertEquals(-12, s.deserializeInt(bytes("-12"), 0, 3));
+		assertEquals(Long.MIN_VALUE, s.deserializeLong(bytes("-9223372036854775808"), 0, 20));
+		assertEquals("05", new String(s.serialize(5, null), "ISO-8859-1"));
+		invalid(s, "");
+		invalid(s, "+");
+		invalid(s, "1a");
+		invalid(s, "9223372036854775808");
+	}
+
+	public void testBinaryNumber() throws Exception {
+		BinaryNumberSerializer s = new BinaryNumberSerializer("2");
+		byte[] d = s.serialize(40000, null);
+		assertEquals(2, d.length);
+		assertEquals(40000, s.deserializeInt(d, 0, d.length));
+		assertEquals(Integer.valueOf(40000), s.deserialize(d, null));
+	}
+
+	public void testBinaryNumberHighBitByte() throws Exception {
+		BinaryNumberSerializer s = new BinaryNumberSerializer("2");
+		// Bytes of 0x80 and above aren't sign-extended
+		byte[] d = { 0x00, (byte) 0x80 };
+		assertEquals(128, s.deserializeInt(d, 0, d.length));
+		assertEquals(128L, s.deserializeLong(d, 0, d.length));
+		assertEquals(Integer.valueOf(128), s.deserialize(d, null));
+		d = new byte[] { (byte) 0xFF, (byte) 0xFE };
+		assertEquals(65534, s.deserializeInt(d, 0, d.length));
+		assertEquals(Integer.valueOf(65534), s.deserialize(d, null));
+	}
+
+	public void testBinaryNumberHighBitInt() throws Exception {
+		BinaryNumberSerializer s = new BinaryNumberSerializer("4");
+		byte[] max = { 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+		assertEquals(Integer.MAX_VALUE, s.deserializeInt(max, 0, max.length));
+		assertEquals(Integer.MAX_VALUE, s.deserializeLong(max, 0, max.length));
+
+		// Unsigned, doesn't fit in int
+		byte[] d = { (byte) 0x80, 0x00, 0x00, 0x00 };
+		assertEquals(0x80000000L, s.deserializeLong(d, 0, d.length));
+		d = new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+		assertEquals(0xFFFFFFFFL, s.deserializeLong(d, 0, d.length));
+		try {
+			s.deserializeInt(d, 0, d.length);
+			fail();
+		} catch (SerializationException expected) {
+		}
+		// Boxed value wraps, as a cast of deserializeLong()
+		assertEquals(Integer.valueOf(-1), s.deserialize(d, null));
+	}
+
+	public void testVarBinaryNumber() throws Exception {
+		VarBinaryNumberSerializer s = new VarBinaryNumberSerializer(null);
+		byte[] d = { 0x07, 0x5B, (byte) 0xCD, 0x15 };
+		assertEquals(123456789L, s.deserializeLong(d, 0, d.length));
+		assertEquals(Long.valueOf(123456789L), s.deserialize(d, null));
+	}
+
+	private static void invalid(NumericSerializer s, String value) throws Exception {
+		try {
+			byte[] b = bytes(value);
+			s.deserializeLong(b, 0, b.length);
+			fail(value);
+		} catch (SerializationException expected) {
+		}
+	}
+
+	private static byte[] bytes(String s) throws Exception {
+		return s.getBytes("ISO-8859-1");
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.serialize;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class StringSerializerTest extends TestCase {
+
+	public void testAscii() throws Exception {
+		String[] charsets = { null, "US-ASCII", "UTF-8", "ISO-8859-2", "windows-1250" };
+		for (String cs : charsets) {
+			DefaultSerializationContext ctx = new DefaultSerializationContext(cs);
+			byte[] data = s.serialize("Object name", ctx);
+			assertTrue(Arrays.equals("Object name".getBytes("US-ASCII"), data));
+			assertEquals("Object name", s.deserialize(data, ctx));
+		}
+	}
+
+	public void testNonAscii() throws Exception {
+		String[] charsets = { "UTF-8", "ISO-8859-2", "windows-1250" };
+		for (String cs : charsets) {
+			DefaultSerializationContext ctx = new DefaultSerializationContext(cs);
+			byte[] data = s.serialize("čćž name", ctx);
+			assertTrue(cs, Arrays.equals("čćž name".getBytes(cs), data));
+			assertEquals("čćž name", s.deserialize(data, ctx));
+		}
+	}
+
+	public void testLatin1() throws Exception {
+		DefaultSerializationContext ctx = new DefaultSerializationContext();
+		byte[] data = { 'a', (byte) 0xE9, (byte) 0xFF };
+		assertEquals("aéÿ", s.deserialize(data, ctx));
+		assertTrue(Arrays.equals(data, s.serialize("aéÿ", ctx)));
+	}
+
+	public void testUnsupportedCharset() throws Exception {
+		DefaultSerializationContext ctx = new DefaultSerializationContext("x-unknown");
+		try {
+			s.deserialize(new byte[] { 'a' }, ctx);
+			fail();
+		} catch (SerializationException expected) {
+			assertEquals("unsupported character set: x-unknown", expected.getMessage());
+		}
+		try {
+			s.serialize("a", ctx);
+			fail();
+		} catch (SerializationException expected) {
+		}
+	}
+
+	private final StringSerializer s = new StringSerializer("64");
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import com.nmote.iim4j.TestData;
+
+public class BufferedFileIIMInputStreamTest extends IIMInputStreamTestCase {
+
+	protected IIMInputStream open(byte[] data) throws Exception {
+		// Small buffer, so reads cross buffer boundaries
+		return new BufferedFileIIMInputStream(new RandomAccessFile(TestData.tempFile(data), "r").getChannel(), 1000);
+	}
+
+	public void testPositionalReadFromBuffer() throws Exception {
+		byte[] data = TestData.sampleBytes();
+		CountingFileChannel channel = new CountingFileChannel(TestData.tempFile(data));
+		BufferedFileIIMInputStream in = new BufferedFileIIMInputStream(channel, 100);
+		try {
+			in.seek(50);
+			assertEquals(data[50] & 0xFF, in.read());
+			int reads = channel.getReads();
+
+			// Inside buffered window [50, 150)
+			byte[] b = new byte[30];
+			assertEquals(30, in.read(120, b, 0, 30));
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data, 120, 150), b));
+			assertEquals(reads, channel.getReads());
+
+			// Partly outside the window
+			assertEquals(30, in.read(140, b, 0, 30));
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data, 140, 170), b));
+			assertEquals(reads + 1, channel.getReads());
+			assertEquals(51, in.position());
+		} finally {
+			in.close();
+		}
+	}
+}
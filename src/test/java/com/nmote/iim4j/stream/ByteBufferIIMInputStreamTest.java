@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.nio.ByteBuffer;
+
+public class ByteBufferIIMInputStreamTest extends IIMInputStreamTestCase {
+
+	protected IIMInputStream open(byte[] data) throws Exception {
+		// Direct buffer at non-zero offset, without a backing array
+		ByteBuffer b = ByteBuffer.allocateDirect(data.length + 10);
+		b.position(10);
+		b.put(data);
+		b.position(10);
+		return new ByteBufferIIMInputStream(b.slice());
+	}
+
+	public void testSlice() throws Exception {
+		ByteBufferIIMInputStream in = new ByteBufferIIMInputStream(data);
+		ByteBuffer s = in.slice(100, 10);
+		assertEquals(10, s.remaining());
+		assertEquals(data[100], s.get(0));
+		try {
+			in.slice(data.length - 5, 10);
+			fail();
+		} catch (java.io.EOFException expected) {
+		}
+	}
+}
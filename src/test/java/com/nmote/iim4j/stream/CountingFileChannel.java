@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read only FileChannel that counts read calls, used to check how often
+ * streams hit the file.
+ */
+public class CountingFileChannel extends FileChannel {
+
+	public CountingFileChannel(File file) throws IOException {
+		this.channel = new RandomAccessFile(file, "r").getChannel();
+	}
+
+	/**
+	 * @return number of read calls so far
+	 */
+	public int getReads() {
+		return reads.get();
+	}
+
+	public int read(ByteBuffer dst) throws IOException {
+		reads.incrementAndGet();
+		return channel.read(dst);
+	}
+
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		reads.incrementAndGet();
+		return channel.read(dsts, offset, length);
+	}
+
+	public int read(ByteBuffer dst, long position) throws IOException {
+		reads.incrementAndGet();
+		return channel.read(dst, position);
+	}
+
+	public int write(ByteBuffer src) throws IOException {
+		throw new IOException("read only");
+	}
+
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		throw new IOException("read only");
+	}
+
+	public int write(ByteBuffer src, long position) throws IOException {
+		throw new IOException("read only");
+	}
+
+	public long position() throws IOException {
+		return channel.position();
+	}
+
+	public FileChannel position(long newPosition) throws IOException {
+		channel.position(newPosition);
+		return this;
+	}
+
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	public FileChannel truncate(long size) throws IOException {
+		throw new IOException("read only");
+	}
+
+	public void force(boolean metaData) throws IOException {
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(position, count, target);
+	}
+
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		throw new IOException("read only");
+	}
+
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+		return channel.map(mode, position, size);
+	}
+
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+		return channel.lock(position, size, shared);
+	}
+
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		return channel.tryLock(position, size, shared);
+	}
+
+	protected void implCloseChannel() throws IOException {
+		channel.close();
+	}
+
+	private final FileChannel channel;
+	private final AtomicInteger reads = new AtomicInteger();
+}
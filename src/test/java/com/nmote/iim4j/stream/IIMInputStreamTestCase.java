@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.TestData;
+
+/**
+ * Checks IIMInputStream contract against sample data. Subclasses open
+ * streams of a particular implementation.
+ */
+public abstract class IIMInputStreamTestCase extends TestCase {
+
+	protected abstract IIMInputStream open(byte[] data) throws Exception;
+
+	protected void setUp() throws Exception {
+		data = TestData.sampleBytes();
+	}
+
+	public void testReadBytes() throws Exception {
+		IIMInputStream in = open(data);
+		try {
+			for (int i = 0; i < data.length; ++i) {
+				assertEquals("byte " + i, data[i] & 0xFF, in.read());
+			}
+			assertEquals(-1, in.read());
+			assertEquals(data.length, in.position());
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testReadBlocks() throws Exception {
+		IIMInputStream in = open(data);
+		try {
+			byte[] copy = new byte[data.length];
+			int pos = 0;
+			for (int r; pos < copy.length && (r = in.read(copy, pos, Math.min(3001, copy.length - pos))) != -1;) {
+				pos += r;
+			}
+			assertEquals(data.length, pos);
+			assertTrue(Arrays.equals(data, copy));
+			assertEquals(-1, in.read(new byte[10], 0, 10));
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testSeek() throws Exception {
+		IIMInputStream in = open(data);
+		try {
+			in.seek(20000);
+			assertEquals(20000, in.position());
+			assertEquals(data[20000] & 0xFF, in.read());
+			if (in.isCached()) {
+				in.seek(10);
+				assertEquals(data[10] & 0xFF, in.read());
+				in.seek(data.length - 1);
+				assertEquals(data[data.length - 1] & 0xFF, in.read());
+				assertEquals(-1, in.read());
+			} else {
+				// Back within look-ahead buffer
+				in.read();
+				in.seek(20000);
+				assertEquals(data[20000] & 0xFF, in.read());
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testPositionalRead() throws Exception {
+		IIMInputStream in = open(data);
+		if (!(in instanceof PositionalIIMInputStream) || !in.isCached()) {
+			in.close();
+			return;
+		}
+		PositionalIIMInputStream p = (PositionalIIMInputStream) in;
+		try {
+			in.seek(5);
+			byte[] b = new byte[70000];
+			int n = 0;
+			for (int r; n < b.length && (r = p.read(1000 + n, b, n, b.length - n)) != -1;) {
+				n += r;
+			}
+			assertEquals(b.length, n);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 1000 + b.length), b));
+			assertEquals("position unchanged", 5, in.position());
+			assertEquals(-1, p.read(data.length, b, 0, 1));
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testConcurrentPositionalReads() throws Exception {
+		IIMInputStream in = open(data);
+		if (!(in instanceof PositionalIIMInputStream) || !in.isCached()) {
+			in.close();
+			return;
+		}
+		final PositionalIIMInputStream p = (PositionalIIMInputStream) in;
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		try {
+			for (int t = 0; t < threads.length; ++t) {
+				final int seed = t;
+				threads[t] = new Thread() {
+					public void run() {
+						try {
+							Random random = new Random(seed);
+							byte[] b = new byte[5000];
+							for (int i = 0; i < 200; ++i) {
+								int pos = random.nextInt(data.length - b.length);
+								int n = 0;
+								for (int r; n < b.length && (r = p.read(pos + n, b, n, b.length - n)) != -1;) {
+									n += r;
+								}
+								assertEquals(b.length, n);
+								assertTrue(Arrays.equals(Arrays.copyOfRange(data, pos, pos + n), b));
+							}
+						} catch (Throwable e) {
+							errors.add(e);
+						}
+					}
+				};
+				threads[t].start();
+			}
+
+			// Sequential reads are unaffected by positional reads
+			for (int i = 0; i < data.length; ++i) {
+				assertEquals("byte " + i, data[i] & 0xFF, in.read());
+			}
+			for (int t = 0; t < threads.length; ++t) {
+				threads[t].join();
+			}
+			assertEquals(Collections.emptyList(), errors);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testReader() throws Exception {
+		IIMInputStream in = open(data);
+		try {
+			assertEquals(TestData.readAll(new ByteBufferIIMInputStream(data)), TestData.readAll(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	protected byte[] data;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.nmote.iim4j.IIMFile;
+import com.nmote.iim4j.IIMReader;
+import com.nmote.iim4j.TestData;
+
+public class MappedIIMInputStreamTest extends IIMInputStreamTestCase {
+
+	protected IIMInputStream open(byte[] data) throws Exception {
+		// Small window, so reads cross window boundaries
+		return new MappedIIMInputStream(new RandomAccessFile(TestData.tempFile(data), "r").getChannel(), 4096);
+	}
+
+	public void testPositionalReadsUseMapping() throws Exception {
+		FileChannel channel = new RandomAccessFile(TestData.tempFile(data), "r").getChannel();
+		MappedIIMInputStream in = new MappedIIMInputStream(channel);
+		byte[] b = new byte[16];
+		assertEquals(b.length, in.read(0, b, 0, b.length));
+
+		// Mapping stays valid after channel is closed, reads must not
+		// fall back to channel
+		channel.close();
+		assertEquals(b.length, in.read(50000, b, 0, b.length));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 50000, 50000 + b.length), b));
+		assertEquals(TestData.readAll(new ByteBufferIIMInputStream(data)), TestData.readAll(in));
+	}
+
+	public void testWindowsAreKept() throws Exception {
+		FileChannel channel = new RandomAccessFile(TestData.tempFile(data), "r").getChannel();
+		MappedIIMInputStream in = new MappedIIMInputStream(channel, 4096);
+		byte[] b = new byte[16];
+		assertEquals(b.length, in.read(5000, b, 0, b.length));
+		assertEquals(b.length, in.read(20000, b, 0, b.length));
+
+		// Windows are aligned and mapped once, reads in mapped windows
+		// don't need a channel
+		channel.close();
+		for (long pos : new long[] { 4096, 5000, 20000, 8192 - 8, 16384 }) {
+			assertEquals(8, in.read(pos, b, 0, 8));
+			assertTrue(Arrays.equals(Arrays.copyOfRange(data, (int) pos, (int) pos + 8), Arrays.copyOf(b, 8)));
+		}
+	}
+
+	public void testWholeFileWindow() throws Exception {
+		IIMFile file = new IIMFile();
+		MappedIIMInputStream in = new MappedIIMInputStream(TestData.tempFile(data));
+		try {
+			file.readFrom(new IIMReader(in));
+			assertTrue(Arrays.equals(data, file.toByteArray()));
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.nmote.iim4j.IIM;
+import com.nmote.iim4j.IIMFile;
+import com.nmote.iim4j.IIMReader;
+import com.nmote.iim4j.TestData;
+
+public class StreamIIMInputStreamTest extends IIMInputStreamTestCase {
+
+	protected IIMInputStream open(byte[] data) throws Exception {
+		return new StreamIIMInputStream(new ByteArrayInputStream(data), 64);
+	}
+
+	public void testShortReads() throws Exception {
+		// Underlying stream returning few bytes at a time, like a socket
+		InputStream in = new FilterInputStream(new ByteArrayInputStream(data)) {
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 7));
+			}
+		};
+		assertEquals(TestData.readAll(new ByteBufferIIMInputStream(data)),
+				TestData.readAll(new StreamIIMInputStream(in, 64)));
+	}
+
+	public void testSeekBeforeBuffer() throws Exception {
+		StreamIIMInputStream in = new StreamIIMInputStream(new ByteArrayInputStream(data), 64);
+		in.seek(1000);
+		assertEquals(data[1000] & 0xFF, in.read());
+		assertFalse(in.canSeek(0));
+		try {
+			in.seek(0);
+			fail();
+		} catch (IOException expected) {
+		}
+	}
+
+	public void testJPEG() throws Exception {
+		// Minimal JPEG with APP0 segment and a large scan
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		jpeg.write(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16 });
+		jpeg.write(new byte[14]);
+		jpeg.write(new byte[] { (byte) 0xFF, (byte) 0xDA });
+		jpeg.write(new byte[5000]);
+
+		IIMFile file = TestData.sample();
+		file.remove(IIM.OBJECTDATA_PREVIEW_DATA);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JPEGUtil.insertIIMIntoJPEG(out, file, new ByteArrayInputStream(jpeg.toByteArray()));
+
+		IIMInputStream in = new JPEGIIMInputStream(new StreamIIMInputStream(new ByteArrayInputStream(out
+				.toByteArray()), 64));
+		// APPD segment is padded with zeros, which IIMFile recovers from
+		IIMFile read = new IIMFile();
+		read.readFrom(new IIMReader(in));
+		assertTrue(Arrays.equals(file.toByteArray(2), read.toByteArray()));
+	}
+}
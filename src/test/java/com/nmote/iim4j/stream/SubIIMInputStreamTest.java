@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.IOException;
+
+public class SubIIMInputStreamTest extends IIMInputStreamTestCase {
+
+	protected IIMInputStream open(byte[] data) throws Exception {
+		// Positional reads of a sub stream fall back to seek and read
+		return new SubIIMInputStream(new SeekingIIMInputStream(data), 0, data.length);
+	}
+
+	/**
+	 * Cached stream without positional reads, failing if its cursor is moved
+	 * without holding its lock.
+	 */
+	private static class SeekingIIMInputStream implements IIMInputStream {
+
+		SeekingIIMInputStream(byte[] data) {
+			this.in = new ByteBufferIIMInputStream(data);
+		}
+
+		public boolean isCached() {
+			return true;
+		}
+
+		public void seek(long position) throws IOException {
+			checkLock();
+			in.seek(position);
+		}
+
+		public long position() throws IOException {
+			return in.position();
+		}
+
+		public int read() throws IOException {
+			checkLock();
+			return in.read();
+		}
+
+		public int read(byte[] buffer) throws IOException {
+			return read(buffer, 0, buffer.length);
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			checkLock();
+			return in.read(buffer, offset, length);
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private void checkLock() {
+			if (!Thread.holdsLock(this)) {
+				throw new IllegalStateException("unlocked access");
+			}
+		}
+
+		private final ByteBufferIIMInputStream in;
+	}
+}
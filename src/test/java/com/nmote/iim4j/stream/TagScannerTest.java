@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Nmote Ltd. 2004-2015. All rights reserved.
+ * See LICENSE doc in a root of project folder for additional information.
+ */
+
+package com.nmote.iim4j.stream;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import com.nmote.iim4j.IIM;
+import com.nmote.iim4j.IIMFile;
+import com.nmote.iim4j.IIMReader;
+import com.nmote.iim4j.dataset.DataSet;
+
+public class TagScannerTest extends TestCase {
+
+	public void testLengthPastEnd() throws Exception {
+		// 2:5 with 16384 bytes long value, followed by less
+		byte[] data = concat(new byte[] { 0, 0x1C, 2, 5, 0x40, 0 }, objectName());
+		assertEquals(6, TagScanner.find(new ByteBufferIIMInputStream(data)));
+		// Input that isn't cached has unknown length
+		assertEquals(1, TagScanner.find(new StreamIIMInputStream(new ByteArrayInputStream(data))));
+	}
+
+	public void testDataSetNotAccepted() throws Exception {
+		byte[] data = concat(new byte[] { 0, 0x1C, 2, (byte) 254, 0, 1, 7 }, objectName());
+		assertEquals(1, TagScanner.find(new ByteBufferIIMInputStream(data)));
+		IIMInputStream[] inputs = { new ByteBufferIIMInputStream(data),
+				new StreamIIMInputStream(new ByteArrayInputStream(data)) };
+		for (IIMInputStream in : inputs) {
+			assertEquals(7, TagScanner.find(in, ds -> ds != IIM.DS(2, 254)));
+			assertEquals(7, in.position());
+		}
+	}
+
+	public void testRecoverSkipsFakeTags() throws Exception {
+		byte[] preview = new byte[100];
+		// Fake headers inside a value: unknown 2:254 and 2:5 longer than input
+		System.arraycopy(new byte[] { 0x1C, 2, (byte) 254, 0, 1, 7 }, 0, preview, 10, 6);
+		System.arraycopy(new byte[] { 0x1C, 2, 5, 0x40, 0 }, 0, preview, 30, 5);
+		IIMFile f = new IIMFile();
+		f.add(IIM.OBJECTDATA_PREVIEW_DATA, preview);
+		byte[] data = concat(f.toByteArray(), objectName());
+		// Damage preview data set number
+		data[2] = (byte) 255;
+
+		IIMReader reader = new IIMReader(new ByteBufferIIMInputStream(data));
+		try {
+			reader.read();
+			fail();
+		} catch (Exception expected) {
+		}
+		assertTrue(reader.recover());
+		DataSet ds = reader.read();
+		assertEquals(IIM.OBJECT_NAME, ds.getInfo().getDataSetNumber());
+		assertNull(reader.read());
+	}
+
+	private static byte[] objectName() throws Exception {
+		IIMFile f = new IIMFile();
+		f.add(IIM.OBJECT_NAME, "name");
+		return f.toByteArray();
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = new byte[a.length + b.length];
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+}